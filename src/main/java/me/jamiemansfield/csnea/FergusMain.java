@@ -8,20 +8,21 @@
 package me.jamiemansfield.csnea;
 
 import me.jamiemansfield.csnea.cli.LoginPhase;
-import me.jamiemansfield.csnea.cli.Phase;
-import me.jamiemansfield.csnea.model.Student;
-import me.jamiemansfield.csnea.model.Subject;
-
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.nio.file.Files;
+import me.jamiemansfield.csnea.cli.Session;
+import me.jamiemansfield.csnea.http.FergusHttpServer;
+import me.jamiemansfield.csnea.model.SubjectRegistry;
+import me.jamiemansfield.csnea.model.SubjectReloader;
+import me.jamiemansfield.csnea.security.SessionTokens;
+import me.jamiemansfield.csnea.server.FergusServer;
+import me.jamiemansfield.csnea.store.StudentRepository;
+import me.jamiemansfield.csnea.util.concurrent.MailboxExecutor;
+import me.jamiemansfield.csnea.util.concurrent.ParallelLoader;
+
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Collections;
-import java.util.List;
 import java.util.Objects;
-import java.util.Scanner;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The Main-Class (as would be specified in the jar's MANIFEST) of Fergus'
@@ -29,25 +30,37 @@ import java.util.Scanner;
  */
 public final class FergusMain {
 
-    private static FergusMain $;
-
-    /**
-     * Gets the global instance of Fergus' Quiz.
-     *
-     * @return The instance
-     */
-    public static FergusMain get() {
-        return $;
-    }
-
     /**
      * The main method of Fergus's quiz - this is the method that the JVM will
      * invoke upon the execution of the program.
      *
+     * <p>Should {@code --server <port>} be given, Fergus' Quiz will serve
+     * many students at once on that port - rather than the one student
+     * at the console. Should {@code --http <port>} be given, Fergus' Quiz
+     * will instead serve its JSON API over HTTP on that port. Should
+     * {@code --verbose} be given, the time taken to load each file is
+     * printed at startup.</p>
+     *
      * @param args The program arguments as provided to the JVM
      */
     public static void main(final String[] args) {
-        new FergusMain();
+        // Establish whether to run as a server
+        int port = -1;
+        int httpPort = -1;
+        boolean verbose = false;
+        for (int i = 0; i < args.length; i++) {
+            if (Objects.equals(args[i], "--server") && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            }
+            else if (Objects.equals(args[i], "--http") && i + 1 < args.length) {
+                httpPort = Integer.parseInt(args[++i]);
+            }
+            else if (Objects.equals(args[i], "--verbose")) {
+                verbose = true;
+            }
+        }
+
+        new FergusMain(port, httpPort, verbose);
     }
 
     /**
@@ -56,141 +69,179 @@ public final class FergusMain {
     public static final Path STUDENTS_XML = Paths.get("students.xml");
 
     /**
-     * The path that the 'subjects.xml' file will be found.
+     * The path that the 'students.dat' file will be found.
      */
-    public static final Path SUBJECTS_XML = Paths.get("subjects.xml");
+    public static final Path STUDENTS_DAT = Paths.get("students.dat");
 
     /**
-     * The login phase.
+     * The path that the 'students.db' file will be found.
      */
-    public static final LoginPhase LOGIN_PHASE = new LoginPhase();
+    public static final Path STUDENTS_DB = Paths.get("students.db");
 
-    private final List<Student> students;
-    private final Scanner scanner = new Scanner(System.in);
-    private Phase<?> currentPhase = LOGIN_PHASE;
-    private boolean running = true;
-
-    private FergusMain() {
-        // Set global instance
-        $ = this;
-
-        // If the students.xml doesn't exist, create an empty student set.
-        if (Files.notExists(STUDENTS_XML)) {
-            try (final OutputStream outputStream = Files.newOutputStream(STUDENTS_XML)) {
-                Student.serialise(Collections.emptyList(), outputStream);
-            } catch (final IOException ex) {
-                throw new RuntimeException("Failed to create the students.xml file!", ex);
-            }
-        }
+    /**
+     * The path that the 'students.journal' file will be found.
+     */
+    public static final Path STUDENTS_JOURNAL = Paths.get("students.journal");
 
-        // Read the student set from the students.xml file
-        try (final InputStream inputStream = Files.newInputStream(STUDENTS_XML)) {
-            this.students = Student.deserialise(inputStream);
-        } catch (final IOException ex) {
-            throw new RuntimeException("Failed to open the students.xml file!", ex);
-        }
+    /**
+     * The number of journal records after which they are folded
+     * back into the students snapshot.
+     */
+    public static final int CHECKPOINT_INTERVAL = Integer.getInteger("fergus.checkpointInterval", 100);
 
-        // Initialise subjects registry
-        Subject.init();
+    /**
+     * The number of shards that the students snapshot is partitioned
+     * into.
+     */
+    public static final int SHARDS = Integer.getInteger("fergus.shards", 1);
 
-        // Enter the login phase
-        this.currentPhase.enter();
+    /**
+     * The maximum number of students whose attempts are kept loaded, by
+     * stores that load them when first needed.
+     */
+    public static final int RESIDENT_HISTORIES = Integer.getInteger("fergus.residentHistories", 256);
 
-        // Read from System.in
-        while(this.running) {
-            // Only run if there is input
-            if (scanner.hasNextLine()) {
-                // Gets the raw input
-                final String input = this.scanner.nextLine();
+    /**
+     * The number of threads handling the requests made to the HTTP
+     * server.
+     */
+    public static final int HTTP_THREADS = Integer.getInteger("fergus.http.threads",
+            Runtime.getRuntime().availableProcessors() * 2);
 
-                // Dispatch the command input
-                this.currentPhase.execute(input);
-            }
-        }
-    }
+    /**
+     * The number of requests made to the HTTP server that may wait for
+     * a thread to handle them.
+     */
+    public static final int HTTP_QUEUE = Integer.getInteger("fergus.http.queue", 256);
 
     /**
-     * Gets the actively running phase.
+     * The number of threads that commands are run upon.
      *
-     * @return The current phase
+     * <p>Commands waiting upon the student's input (e.g. answering the
+     * questions of a quiz) run upon the session's own thread, so these
+     * only ever run briefly - and needn't be many more than there are
+     * processors.</p>
      */
-    public final Phase<?> getCurrentPhase() {
-        return this.currentPhase;
-    }
+    public static final int COMMAND_THREADS = Integer.getInteger("fergus.commands.threads",
+            Runtime.getRuntime().availableProcessors() * 2);
 
     /**
-     * Transitions to the given {@link Phase}.
-     *
-     * @param phase The phase to transition to
+     * The longest time, in seconds, to wait for the commands running to
+     * complete once Fergus' Quiz is stopped.
      */
-    public void transitionToPhase(final Phase<?> phase) {
-        this.currentPhase.exit();
-        this.currentPhase = phase;
-        this.currentPhase.enter();
-    }
+    public static final long SHUTDOWN_TIMEOUT = Long.getLong("fergus.shutdownTimeout", 10);
 
     /**
-     * Gets an immutable view of the students.
-     *
-     * @return The students
+     * The number of commands that may wait to be run, for each student.
      */
-    public final List<Student> getStudents() {
-        return Collections.unmodifiableList(this.students);
-    }
+    public static final int COMMAND_MAILBOX = Integer.getInteger("fergus.commands.mailbox", 16);
 
     /**
-     * Registers the given {@link Student} to the game.
-     *
-     * @param student The student to register
+     * The most session tokens that may be held at once, after which the
+     * oldest are forgotten.
      */
-    public void registerStudent(final Student student) {
-        this.students.add(student);
+    public static final int TOKEN_CAPACITY = Integer.getInteger("fergus.tokens.capacity", 10_000);
 
-        this.updateStudentsFile();
-    }
+    /**
+     * The time, in seconds, that a session token is valid for after being
+     * issued.
+     */
+    public static final long TOKEN_TTL = Long.getLong("fergus.tokens.ttl", 60 * 60);
 
     /**
-     * Updates the students.xml file.
+     * Whether the subjects should be reloaded as their files change.
      */
-    public void updateStudentsFile() {
-        // Update the students.xml file
-        try (final OutputStream outputStream = Files.newOutputStream(STUDENTS_XML)) {
-            Student.serialise(this.students, outputStream);
-        } catch (final IOException ex) {
-            throw new RuntimeException("Failed to update the students.xml file!", ex);
-        }
-    }
+    public static final boolean WATCH_SUBJECTS =
+            Boolean.parseBoolean(System.getProperty("fergus.subjects.watch", "true"));
 
     /**
-     * Gets the student of the provided username.
-     *
-     * @param username The student's username
-     * @return The student
+     * The path that the 'subjects.xml' file will be found.
      */
-    public Student getStudent(final String username) {
-        return this.students.stream()
-                .filter(student -> Objects.equals(student.getUsername(), username))
-                .findFirst().orElse(null);
-    }
+    public static final Path SUBJECTS_XML = Paths.get("subjects.xml");
 
     /**
-     * Establishes whether a student of the provided username exists.
-     *
-     * @return {@code true} if a student of that username exists,
-     *         {@code false} otherwise
+     * The login phase.
      */
-    public boolean hasStudentOfUsername(final String username) {
-        return this.students.stream()
-                .anyMatch(student -> Objects.equals(student.getUsername(), username));
+    public static final LoginPhase LOGIN_PHASE = new LoginPhase();
+
+    private final StudentRepository students;
+    private final SubjectRegistry subjects;
+    private final MailboxExecutor<Object> commandExecutor =
+            new MailboxExecutor<>("Fergus Command", COMMAND_THREADS, COMMAND_MAILBOX);
+    private final SessionTokens tokens = new SessionTokens(TOKEN_CAPACITY, TOKEN_TTL);
+
+    private FergusMain(final int port, final int httpPort, final boolean verbose) {
+        // Open the students store, and initialise the subjects registry,
+        // at once
+        final ParallelLoader loader = new ParallelLoader(verbose ? System.out : null);
+        final ForkJoinTask<StudentRepository> students = loader.fork("students", StudentRepository::open);
+        final ForkJoinTask<SubjectRegistry> subjects = loader.fork(SUBJECTS_XML.toString(),
+                () -> SubjectRegistry.load(SUBJECTS_XML, loader));
+        try {
+            loader.await();
+        } catch (final ParallelLoader.LoadException ex) {
+            // Don't leave the store open, should it have loaded
+            if (students.join() != null) students.join().close();
+            throw ex;
+        }
+        this.students = students.join();
+        this.subjects = subjects.join();
+
+        // Reload the subjects as they are changed
+        final SubjectReloader reloader = WATCH_SUBJECTS ? new SubjectReloader(SUBJECTS_XML, this.subjects) : null;
+
+        if (httpPort >= 0) {
+            final FergusHttpServer server = new FergusHttpServer(httpPort, HTTP_THREADS, HTTP_QUEUE,
+                    this.students, this.subjects, this.commandExecutor, this.tokens);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.stop();
+                this.shutdown();
+            }, "Fergus Shutdown"));
+
+            // Serve the API, until stopped
+            server.run();
+        }
+        else if (port < 0) {
+            // Make sure any changes are persisted however the program is
+            // closed
+            Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "Fergus Shutdown"));
+
+            // Run a single session, reading from System.in
+            new Session(System.in, System.out, this.students, this.subjects, this.commandExecutor, this.tokens)
+                    .run();
+        }
+        else {
+            final FergusServer server = new FergusServer(port, this.students, this.subjects, this.commandExecutor,
+                    this.tokens);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.stop();
+                this.shutdown();
+            }, "Fergus Shutdown"));
+
+            // Serve the sessions of every connection
+            server.run();
+        }
+
+        // Persist any outstanding changes
+        if (reloader != null) reloader.close();
+        this.shutdown();
     }
 
     /**
-     * Gets the {@link Scanner} used for inputting from the console.
-     *
-     * @return The scanner
+     * Stops the command executor, and waits for the commands running to
+     * complete, before closing the student store - so no command is left
+     * changing the store as it closes.
      */
-    public final Scanner getScanner() {
-        return this.scanner;
+    private void shutdown() {
+        this.commandExecutor.shutdown();
+        try {
+            if (!this.commandExecutor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS)) {
+                System.err.println("Commands were still running as Fergus' Quiz stopped!");
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        this.students.close();
     }
 
 }
@@ -11,7 +11,6 @@ import me.jamiemansfield.csnea.command.CommandDispatcher;
 import me.jamiemansfield.csnea.cli.command.CommonCommands;
 import me.jamiemansfield.csnea.cli.command.LoggedInPhaseCommands;
 import me.jamiemansfield.csnea.model.Student;
-import me.jamiemansfield.csnea.model.Subject;
 
 import java.util.Arrays;
 
@@ -20,54 +19,61 @@ public class LoggedInPhase implements Phase<Student> {
     private final CommandDispatcher<Student> dispatcher = new CommandDispatcher<>();
 
     private final Student student;
+    private final String token;
 
-    public LoggedInPhase(final Student student) {
+    public LoggedInPhase(final Student student, final String token) {
         CommonCommands.registerCommands(this.dispatcher);
         LoggedInPhaseCommands.registerCommands(this.dispatcher);
+        LoggedInPhaseCommands.registerAdminCommands(student, this.dispatcher);
         ReportGenerator.registerCommand(student, this.dispatcher);
         this.student = student;
+        this.token = token;
     }
 
     @Override
-    public void displayHelp() {
+    public void displayHelp(final Session session) {
         Arrays.asList(
                 "Welcome to Fergus' Quiz",
                 "",
                 "Available Subjects:"
-        ).forEach(System.out::println);
+        ).forEach(session.getOut()::println);
 
-        Subject.values().forEach(subject -> {
-            System.out.println("  " + subject.getId());
+        session.getSubjects().values().forEach(subject -> {
+            session.getOut().println("  " + subject.getId());
         });
 
         Arrays.asList(
                 "",
                 "Commands:",
-                "  quiz <subject> <difficulty>",
-                "    Take a quiz",
+                "  quiz <subject> <difficulty> [-r <seed>]",
+                "    Take a quiz, of questions drawn at random (or from the seed of an earlier quiz)",
                 "  logout",
                 "    Logs the student out",
                 "  exit",
                 "    Exits the program"
-        ).forEach(System.out::println);
+        ).forEach(session.getOut()::println);
 
         // Display the administrator commands, if the student has the admin flag
         if (student.isAdmin()) {
             Arrays.asList(
                     "",
                     "Administrator Commands:",
-                    "  report -g <student|quiz> [-o <out.txt>] [generator options]"
-            ).forEach(System.out::println);
+                    "  report -g <student|quiz|year|admins> [-o <out.txt>] [generator options]",
+                    "  export [-o <students.xml>]",
+                    "    Exports the students to an XML file",
+                    "  stats",
+                    "    Displays the statistics of the command executor, password security, session tokens and question banks"
+            ).forEach(session.getOut()::println);
         }
     }
 
     @Override
-    public void enter() {
-        this.displayHelp();
+    public void enter(final Session session) {
+        this.displayHelp(session);
     }
 
     @Override
-    public void exit() {
+    public void exit(final Session session) {
     }
 
     @Override
@@ -80,4 +86,13 @@ public class LoggedInPhase implements Phase<Student> {
         return this.dispatcher;
     }
 
+    /**
+     * Gets the session token issued to the student, as they logged in.
+     *
+     * @return The token
+     */
+    public String getToken() {
+        return this.token;
+    }
+
 }
@@ -27,28 +27,30 @@ public class LoginPhase implements Phase<Object> {
     }
 
     @Override
-    public void displayHelp() {
+    public void displayHelp(final Session session) {
         Arrays.asList(
                 "Fergus' Quiz",
                 "",
                 "Commands:",
                 "  login <username> <password>",
                 "    Allows a user to login to Fergus' Quiz",
+                "  login -t <token>",
+                "    Allows a user to login again, with the session token from their last login",
                 "  signup",
                 "    Allows a student to signup to Fergus' Quiz",
                 "  exit",
                 "    Exits the program"
-        ).forEach(System.out::println);
+        ).forEach(session.getOut()::println);
 
     }
 
     @Override
-    public void enter() {
-        this.displayHelp();
+    public void enter(final Session session) {
+        this.displayHelp(session);
     }
 
     @Override
-    public void exit() {
+    public void exit(final Session session) {
     }
 
     @Override
@@ -22,24 +22,30 @@ public interface Phase<C> {
     /**
      * Displays the phases help screen to the phases'
      * own command caller.
+     *
+     * @param session The session to display to
      */
-    void displayHelp();
+    void displayHelp(final Session session);
 
     /**
      * This method is called upon the entry to the phase,
      * either as the first phase of the program, or having exited
      * another phase.
      *
-     * <em>Typically calls {@link #displayHelp()}.</em>
+     * <em>Typically calls {@link #displayHelp(Session)}.</em>
+     *
+     * @param session The session entering the phase
      */
-    void enter();
+    void enter(final Session session);
 
     /**
      * This method is called upon the exit of the phase,
      * either the program is closing, or it has exited to
      * proceed to another phase.
+     *
+     * @param session The session exiting the phase
      */
-    void exit();
+    void exit(final Session session);
 
     /**
      * Gets the command caller for this instance of the phase.
@@ -56,12 +62,13 @@ public interface Phase<C> {
     CommandDispatcher<C> getDispatcher();
 
     /**
-     * Executes the given command input.
+     * Executes the given command input, within the given session.
      *
+     * @param session The session
      * @param input The command input
      */
-    default void execute(final String input) {
-        this.getDispatcher().execute(this.getCaller(), input);
+    default void execute(final Session session, final String input) {
+        this.getDispatcher().execute(session, this.getCaller(), input);
     }
 
 }
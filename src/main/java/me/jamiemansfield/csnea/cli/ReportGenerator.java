@@ -8,7 +8,6 @@
 package me.jamiemansfield.csnea.cli;
 
 import me.jamiemansfield.csnea.Difficulty;
-import me.jamiemansfield.csnea.FergusMain;
 import me.jamiemansfield.csnea.Grade;
 import me.jamiemansfield.csnea.model.Subject;
 import me.jamiemansfield.csnea.command.Command;
@@ -16,6 +15,8 @@ import me.jamiemansfield.csnea.command.CommandArgs;
 import me.jamiemansfield.csnea.command.CommandDispatcher;
 import me.jamiemansfield.csnea.model.Attempt;
 import me.jamiemansfield.csnea.model.Student;
+import me.jamiemansfield.csnea.store.QuizAggregate;
+import me.jamiemansfield.csnea.store.QuizResult;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -39,17 +40,17 @@ public enum ReportGenerator {
      */
     STUDENT("student") {
         @Override
-        public void generate(final PrintWriter writer, final CommandArgs args) {
+        public void generate(final Session session, final PrintWriter writer, final CommandArgs args) {
             // Check the flags present are correct first
             if (!args.hasFlag("s")) {
-                System.out.println("No student to produce a report on was specified!");
+                session.getOut().println("No student to produce a report on was specified!");
                 return;
             }
 
             // Check the student selection is valid
-            final Student student = FergusMain.get().getStudent(args.getFlag("s"));
+            final Student student = session.getStudents().get(args.getFlag("s"));
             if (student == null) {
-                System.out.println("Invalid student selection!");
+                session.getOut().println("Invalid student selection!");
                 return;
             }
 
@@ -72,14 +73,15 @@ public enum ReportGenerator {
 
     /**
      * A report generator that will produce a report for a given
-     * quiz - as in a subject with specified difficulty.
+     * quiz - as in a subject with specified difficulty. Should the
+     * {@code -a} flag be given, every attempt at the quiz is listed too.
      */
     QUIZ("quiz") {
         @Override
-        public void generate(final PrintWriter writer, final CommandArgs args) {
+        public void generate(final Session session, final PrintWriter writer, final CommandArgs args) {
             // Check the flags present are correct first
             if (!args.hasFlag("q")) {
-                System.out.println("No quiz provided to produce a report on was specified!");
+                session.getOut().println("No quiz provided to produce a report on was specified!");
                 return;
             }
 
@@ -88,12 +90,12 @@ public enum ReportGenerator {
             final Optional<Difficulty> difficulty;
             {
                 final String[] quizSelectionSplit = args.getFlag("q").split(":");
-                subject = Subject.get(quizSelectionSplit[0]);
+                subject = session.getSubjects().get(quizSelectionSplit[0]);
                 difficulty = Difficulty.get(quizSelectionSplit[1]);
             }
 
             if (!subject.isPresent() || !difficulty.isPresent()) {
-                System.out.println("Invalid quiz selection!");
+                session.getOut().println("Invalid quiz selection!");
                 return;
             }
 
@@ -102,49 +104,107 @@ public enum ReportGenerator {
                     + subject.get().getId() + ":" + difficulty.get().getId());
             writer.println();
 
-            // Get all of the attempts for every student but only
-            // for the correct quiz
-            final List<Attempt> attempts = FergusMain.get().getStudents().stream()
-                    .map(Student::getAttempts)
-                    .flatMap(List::stream)
-                    .filter(attempt -> Objects.equals(attempt.getSubject(), subject.get().getId()))
-                    .filter(attempt -> Objects.equals(attempt.getDifficulty(), difficulty.get()))
-                    .collect(Collectors.toList());
-
-            // Use the SE 8 Stream API to get the average percentage attained
-            attempts.stream()
-                    .mapToInt(Attempt::getPercentage)
-                    .average()
-                    .ifPresent(average -> {
-                        final Grade grade = Grade.of(average);
-                        writer.println("The average percentage attained is: " + average + "% (grade: " + grade.getText() + ")");
-                    });
-
-            // Use the SE 8 Stream API to get the max percentage attained
-            attempts.stream()
-                    .mapToInt(Attempt::getPercentage)
-                    .max()
-                    .ifPresent(max -> {
-                        final Grade grade = Grade.of(max);
-                        writer.println("The max percentage attained is: " + max + "% (grade: " + grade.getText() + ")");
-
-                        // The use of a HashSet will remove any duplicates
-                        final Set<Student> achievedBy = new HashSet<>();
-                        attempts.stream()
-                                .filter(attempt -> max == attempt.getPercentage())
-                                .forEach(attempt -> {
-                                    // Find which student the attempt belongs to
-                                    FergusMain.get().getStudents().stream()
-                                            .filter(student -> student.getAttempts().contains(attempt))
-                                            .findFirst()
-                                            .ifPresent(achievedBy::add);
-                                });
-
-                        // Display who the max score was achieved by (it could be many students)
-                        writer.println("Achieved by: " + achievedBy.stream()
-                                .map(Student::getFullname)
-                                .collect(Collectors.joining(",")));
-                    });
+            // Get the aggregate of every attempt at the quiz, which is kept
+            // up to date as attempts are made
+            final QuizAggregate aggregate = session.getStudents().getAggregate(subject.get().getId(), difficulty.get());
+            if (aggregate.getCount() == 0) return;
+
+            final double average = aggregate.getAverage();
+            writer.println("The average percentage attained is: " + average + "% (grade: " + Grade.of(average).getText() + ")");
+
+            final int max = aggregate.getMax();
+            writer.println("The max percentage attained is: " + max + "% (grade: " + Grade.of(max).getText() + ")");
+
+            // Display who the max score was achieved by (it could be many students)
+            writer.println("Achieved by: " + aggregate.getMaxHolders().stream()
+                    .map(Student::getFullname)
+                    .collect(Collectors.joining(",")));
+            writer.println();
+
+            // Output how many attempts attained each grade
+            final int[] histogram = aggregate.getHistogram();
+            final Map<Grade, Integer> grades = new EnumMap<>(Grade.class);
+            for (int percentage = 0; percentage < histogram.length; percentage++) {
+                grades.merge(Grade.of(percentage), histogram[percentage], Integer::sum);
+            }
+            writer.println("## Grades");
+            grades.forEach((grade, count) -> writer.println("- " + grade.getText() + ": " + count));
+
+            // Output every attempt at the quiz, from the index of attempts
+            // by quiz - rather than visiting every student's attempts
+            if (args.hasFlag("a")) {
+                writer.println();
+                writer.println("## Attempts");
+                for (final QuizResult result : session.getStudents().getResults(subject.get().getId(), difficulty.get())) {
+                    writer.println(String.format("- %s (%s): %d%% GRADE: %s",
+                            result.getStudent().getFullname(),
+                            result.getStudent().getUsername(),
+                            result.getPercentage(),
+                            Grade.of(result.getPercentage()).getText()
+                    ));
+                }
+            }
+        }
+    },
+
+    /**
+     * A report generator that will produce a report for a given
+     * year group.
+     */
+    YEAR("year") {
+        @Override
+        public void generate(final Session session, final PrintWriter writer, final CommandArgs args) {
+            // Check the flags present are correct first
+            if (!args.hasFlag("y")) {
+                session.getOut().println("No year group to produce a report on was specified!");
+                return;
+            }
+
+            // Check the year group selection is valid
+            final List<Student> students = session.getStudents().getStudentsInYearGroup(args.getFlag("y"));
+            if (students.isEmpty()) {
+                session.getOut().println("Invalid year group selection!");
+                return;
+            }
+
+            // Lets write the report
+            writer.println("Report produced for the year group: " + args.getFlag("y"));
+            writer.println();
+
+            // Output each student's average
+            writer.println("## Students");
+            students.forEach(student -> {
+                final OptionalDouble average = student.getAttempts().stream()
+                        .mapToInt(Attempt::getPercentage)
+                        .average();
+                writer.println(String.format("- %s (%s): %d attempts%s",
+                        student.getFullname(),
+                        student.getUsername(),
+                        student.getAttempts().size(),
+                        average.isPresent() ? " GRADE: " + Grade.of(average.getAsDouble()).getText() : ""
+                ));
+            });
+        }
+    },
+
+    /**
+     * A report generator that will produce a report of the
+     * administrators.
+     */
+    ADMINS("admins") {
+        @Override
+        public void generate(final Session session, final PrintWriter writer, final CommandArgs args) {
+            // Lets write the report
+            writer.println("Report produced for the administrators");
+            writer.println();
+
+            writer.println("## Administrators");
+            session.getStudents().getAdmins().forEach(student -> {
+                writer.println(String.format("- %s (%s)",
+                        student.getFullname(),
+                        student.getUsername()
+                ));
+            });
         }
     },
     ;
@@ -156,19 +216,30 @@ public enum ReportGenerator {
 
     static {
         // Make the command
-        COMMAND = (caller, args) -> {
+        COMMAND = (session, caller, args) -> {
             // Check the flags present are correct first
             if (!args.hasFlag("g")) {
-                System.out.println("No report generator was specified!");
+                session.getOut().println("No report generator was specified!");
                 return;
             }
 
             // Check the report generator selection is valid
-            final Optional<ReportGenerator> generator = Arrays.stream(values())
-                    .filter(generator1 -> Objects.equals(generator1.id, args.getFlag("g")))
-                    .findFirst();
+            final Optional<ReportGenerator> generator = get(args.getFlag("g"));
             if (!generator.isPresent()) {
-                System.out.println("Invalid report generator selection!");
+                session.getOut().println("Invalid report generator selection!");
+                return;
+            }
+
+            // Clients over the network can't write files upon the server,
+            // so their reports are written to them instead
+            if (session.isRemote()) {
+                if (args.hasFlag("o")) {
+                    session.getOut().println("Reports can only be saved from the server's console!");
+                    return;
+                }
+                final PrintWriter writer = new PrintWriter(session.getOut());
+                generator.get().report(session, writer, args);
+                writer.flush();
                 return;
             }
 
@@ -178,17 +249,8 @@ public enum ReportGenerator {
             // Lets make a report
             try (final ByteArrayOutputStream baos = new ByteArrayOutputStream();
                  final PrintWriter writer = new PrintWriter(baos)) {
-                // NOTE: I'm going to try keep the output to stick to markdown
-                //       that would allow Fergus to convert the reports into
-                //       HTML files that would be very easy to read.
-
-                // Make a start on the report
-                writer.println("Fergus' Quiz Report");
-                writer.println("===================");
-                writer.println();
-
-                // Call the generator
-                generator.get().generate(writer, args);
+                // Write the report
+                generator.get().report(session, writer, args);
 
                 // Store the file
                 writer.flush(); // Make sure all the bytes have been written to the
@@ -202,6 +264,18 @@ public enum ReportGenerator {
         };
     }
 
+    /**
+     * Gets the {@link ReportGenerator} of the provided string identifier.
+     *
+     * @param rawGenerator The string identifier of the report generator
+     * @return The report generator, wrapped in an {@link Optional}
+     */
+    public static Optional<ReportGenerator> get(final String rawGenerator) {
+        return Arrays.stream(values())
+                .filter(generator -> Objects.equals(generator.id, rawGenerator))
+                .findFirst();
+    }
+
     /**
      * Registers the report generator commands to the given {@link CommandDispatcher}, if
      * the provided {@link Student} has the necessary permissions.
@@ -240,12 +314,34 @@ public enum ReportGenerator {
         return this.id;
     }
 
+    /**
+     * Writes the report, with its heading, to the given print writer.
+     *
+     * @param session The session generating the report
+     * @param writer  The writer to write to
+     * @param args    The command args to read from
+     */
+    public final void report(final Session session, final PrintWriter writer, final CommandArgs args) {
+        // NOTE: I'm going to try keep the output to stick to markdown
+        //       that would allow Fergus to convert the reports into
+        //       HTML files that would be very easy to read.
+
+        // Make a start on the report
+        writer.println("Fergus' Quiz Report");
+        writer.println("===================");
+        writer.println();
+
+        // Call the generator
+        this.generate(session, writer, args);
+    }
+
     /**
      * Generates the report, from the given print writer and command arguments.
      *
-     * @param writer The writer to write to
-     * @param args   The command args to read from
+     * @param session The session generating the report
+     * @param writer  The writer to write to
+     * @param args    The command args to read from
      */
-    public abstract void generate(final PrintWriter writer, final CommandArgs args);
+    public abstract void generate(final Session session, final PrintWriter writer, final CommandArgs args);
 
 }
@@ -0,0 +1,200 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.cli;
+
+import me.jamiemansfield.csnea.FergusMain;
+import me.jamiemansfield.csnea.model.SubjectRegistry;
+import me.jamiemansfield.csnea.security.SessionTokens;
+import me.jamiemansfield.csnea.store.StudentRepository;
+import me.jamiemansfield.csnea.util.concurrent.MailboxExecutor;
+
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+
+/**
+ * A session of Fergus' Quiz - a single user's input, output, and the
+ * phase they are currently within.
+ *
+ * <p>The session is given to every command it executes, along with the
+ * services shared between every session.</p>
+ */
+public final class Session implements Runnable {
+
+    private final Scanner scanner;
+    private final PrintStream out;
+    private final StudentRepository students;
+    private final SubjectRegistry subjects;
+    private final MailboxExecutor<Object> commandExecutor;
+    private final SessionTokens tokens;
+    private final boolean remote;
+    private Phase<?> currentPhase = FergusMain.LOGIN_PHASE;
+    private volatile boolean running = true;
+
+    /**
+     * Creates a session, reading from the given input and writing to the
+     * given output - of the console.
+     *
+     * @param in       The input
+     * @param out      The output
+     * @param students The student store
+     * @param subjects The subject registry
+     * @param commandExecutor The executor of commands
+     * @param tokens   The session tokens
+     */
+    public Session(final InputStream in, final PrintStream out,
+                   final StudentRepository students, final SubjectRegistry subjects,
+                   final MailboxExecutor<Object> commandExecutor, final SessionTokens tokens) {
+        this(in, out, students, subjects, commandExecutor, tokens, false);
+    }
+
+    /**
+     * Creates a session, reading from the given input and writing to the
+     * given output.
+     *
+     * @param in       The input
+     * @param out      The output
+     * @param students The student store
+     * @param subjects The subject registry
+     * @param commandExecutor The executor of commands
+     * @param tokens   The session tokens
+     * @param remote   Whether the session is of a client over the network,
+     *                 rather than the console
+     */
+    public Session(final InputStream in, final PrintStream out,
+                   final StudentRepository students, final SubjectRegistry subjects,
+                   final MailboxExecutor<Object> commandExecutor, final SessionTokens tokens,
+                   final boolean remote) {
+        this.scanner = new Scanner(in);
+        this.out = out;
+        this.students = students;
+        this.subjects = subjects;
+        this.commandExecutor = commandExecutor;
+        this.tokens = tokens;
+        this.remote = remote;
+    }
+
+    /**
+     * Runs the session, until it is stopped or its input ends.
+     */
+    @Override
+    public void run() {
+        try {
+            // Enter the login phase
+            this.currentPhase.enter(this);
+
+            // Read from the input, while there is any
+            while (this.running && this.scanner.hasNextLine()) {
+                // Gets the raw input
+                final String input = this.scanner.nextLine();
+
+                // Dispatch the command input
+                this.currentPhase.execute(this, input);
+            }
+        } catch (final NoSuchElementException ex) {
+            // The input ended part way through a command
+        } finally {
+            this.currentPhase.exit(this);
+        }
+    }
+
+    /**
+     * Stops the session, once the current command has completed.
+     */
+    public void stop() {
+        this.running = false;
+    }
+
+    /**
+     * Establishes whether the session is of a client over the network,
+     * whom mustn't be allowed to write files upon the server.
+     *
+     * @return {@code true} if the session is remote;
+     *         {@code false} if it is of the console
+     */
+    public boolean isRemote() {
+        return this.remote;
+    }
+
+    /**
+     * Gets the actively running phase.
+     *
+     * @return The current phase
+     */
+    public Phase<?> getCurrentPhase() {
+        return this.currentPhase;
+    }
+
+    /**
+     * Transitions to the given {@link Phase}.
+     *
+     * @param phase The phase to transition to
+     */
+    public void transitionToPhase(final Phase<?> phase) {
+        this.currentPhase.exit(this);
+        this.currentPhase = phase;
+        this.currentPhase.enter(this);
+    }
+
+    /**
+     * Gets the {@link Scanner} used for inputting to the session.
+     *
+     * @return The scanner
+     */
+    public Scanner getScanner() {
+        return this.scanner;
+    }
+
+    /**
+     * Gets the {@link PrintStream} used for outputting from the session.
+     *
+     * @return The output
+     */
+    public PrintStream getOut() {
+        return this.out;
+    }
+
+    /**
+     * Gets the store of the students.
+     *
+     * @return The student store
+     */
+    public StudentRepository getStudents() {
+        return this.students;
+    }
+
+    /**
+     * Gets the registry of the subjects.
+     *
+     * @return The subject registry
+     */
+    public SubjectRegistry getSubjects() {
+        return this.subjects;
+    }
+
+    /**
+     * Gets the executor of commands, which runs the commands of each
+     * caller in order.
+     *
+     * @return The command executor
+     */
+    public MailboxExecutor<Object> getCommandExecutor() {
+        return this.commandExecutor;
+    }
+
+    /**
+     * Gets the session tokens, issued to students as they log in.
+     *
+     * @return The session tokens
+     */
+    public SessionTokens getTokens() {
+        return this.tokens;
+    }
+
+}
@@ -7,7 +7,6 @@
 
 package me.jamiemansfield.csnea.cli.command;
 
-import me.jamiemansfield.csnea.FergusMain;
 import me.jamiemansfield.csnea.command.CommandDispatcher;
 
 /**
@@ -22,13 +21,13 @@ public final class CommonCommands {
      */
     public static void registerCommands(final CommandDispatcher<?> dispatcher) {
         // The 'exit' command
-        dispatcher.register("exit", (caller, args) -> {
-            System.out.println("Exiting Fergus' Quiz.");
-            System.exit(0);
+        dispatcher.register("exit", (session, caller, args) -> {
+            session.getOut().println("Exiting Fergus' Quiz.");
+            session.stop();
         });
         // The 'help' command
-        dispatcher.register("help", (caller, args) -> {
-            FergusMain.get().getCurrentPhase().displayHelp();
+        dispatcher.register("help", (session, caller, args) -> {
+            session.getCurrentPhase().displayHelp(session);
         });
     }
 
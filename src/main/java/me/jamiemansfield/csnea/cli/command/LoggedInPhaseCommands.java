@@ -10,16 +10,26 @@ package me.jamiemansfield.csnea.cli.command;
 import me.jamiemansfield.csnea.Difficulty;
 import me.jamiemansfield.csnea.FergusMain;
 import me.jamiemansfield.csnea.Grade;
+import me.jamiemansfield.csnea.cli.LoggedInPhase;
 import me.jamiemansfield.csnea.model.Subject;
 import me.jamiemansfield.csnea.util.command.CommandArgsReader;
 import me.jamiemansfield.csnea.command.CommandDispatcher;
 import me.jamiemansfield.csnea.model.Attempt;
 import me.jamiemansfield.csnea.model.Question;
+import me.jamiemansfield.csnea.model.QuestionBankCache;
+import me.jamiemansfield.csnea.model.QuestionSampler;
 import me.jamiemansfield.csnea.model.Student;
+import me.jamiemansfield.csnea.security.SaltProvider;
+import me.jamiemansfield.csnea.security.SessionTokens;
+import me.jamiemansfield.csnea.store.StudentFormat;
+import me.jamiemansfield.csnea.util.concurrent.MailboxExecutor;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -35,10 +45,10 @@ public final class LoggedInPhaseCommands {
      * @param dispatcher The command dispatcher
      */
     public static void registerCommands(final CommandDispatcher<Student> dispatcher) {
-        dispatcher.register("quiz", (caller, args) -> {
+        dispatcher.register("quiz", (session, caller, args) -> {
             // Check the user's input is valid
             if (args.getArgs().size() != 2) {
-                System.out.println("Invalid input. quiz <subject> <difficulty>");
+                session.getOut().println("Invalid input. quiz <subject> <difficulty> [-r <seed>]");
                 return;
             }
 
@@ -47,11 +57,20 @@ public final class LoggedInPhaseCommands {
             final String rawDifficulty = reader.next();
 
             // Validate the student's input
-            final Optional<Subject>    subject    = Subject.get(rawSubject);
+            final Optional<Subject>    subject    = session.getSubjects().get(rawSubject);
             final Optional<Difficulty> difficulty = Difficulty.get(rawDifficulty);
 
             if (!subject.isPresent() || !difficulty.isPresent()) {
-                System.out.println("Invalid choice of subject or difficulty!");
+                session.getOut().println("Invalid choice of subject or difficulty!");
+                return;
+            }
+
+            // Draw the questions, from the seed given to take a quiz again
+            final long seed;
+            try {
+                seed = args.hasFlag("r") ? QuestionSampler.parseSeed(args.getFlag("r")) : QuestionSampler.newSeed();
+            } catch (final NumberFormatException ex) {
+                session.getOut().println("Invalid seed!");
                 return;
             }
 
@@ -59,52 +78,146 @@ public final class LoggedInPhaseCommands {
             final Attempt.Builder attempt = Attempt.builder()
                     .subject(subject.get())
                     .difficulty(difficulty.get());
-            final List<Question> questions = subject.get().getDefinitions().get(difficulty.get());
+            final List<Question> questions = session.getSubjects().sample(subject.get(), difficulty.get(), seed);
+
+            // A quiz without questions can't be scored, so isn't recorded
+            if (questions.isEmpty()) {
+                session.getOut().println("There are no questions of that subject and difficulty!");
+                return;
+            }
+
+            session.getOut().println("Quiz seed: " + QuestionSampler.toString(seed) + " (quiz " + rawSubject + " " +
+                    rawDifficulty + " -r " + QuestionSampler.toString(seed) + " asks these questions again)");
 
             // Keep count of the correctly answered questions
             final AtomicInteger correctCount = new AtomicInteger(0);
 
             for (final Question question : questions) {
                 // Display the question
-                System.out.println(question.getTitle());
+                session.getOut().println(question.getTitle());
 
                 // Display the potential answers, with its index
                 for (int i = 0; i < question.getAnswers().size(); i++) {
                     final String potentialAnswer = question.getAnswers().get(i);
-                    System.out.println(String.format("%d | %s", i, potentialAnswer));
+                    session.getOut().println(String.format("%d | %s", i, potentialAnswer));
                 }
 
                 // Prompt for answer
-                System.out.println("Your answer:");
+                session.getOut().println("Your answer:");
 
                 // Get student's answer
-                final int userAnswer = FergusMain.get().getScanner().nextInt();
+                final int userAnswer = session.getScanner().nextInt();
 
                 // Check if the answer is correct
                 if (userAnswer == question.getCorrectAnswer()) {
-                    System.out.println("You answered correctly!");
+                    session.getOut().println("You answered correctly!");
                     correctCount.incrementAndGet();
                 } else {
-                    System.out.println("You answered incorrectly!");
+                    session.getOut().println("You answered incorrectly!");
                 }
             }
 
             // Establish the percentage achieved
-            final int percentage = Math.round((correctCount.get() / questions.size()) * 100);
+            final int percentage = Math.round(correctCount.get() * 100f / questions.size());
             final Grade grade = Grade.of(percentage);
             Arrays.asList(
                     "Well Done!",
                     "You achieved a " + grade.getText() + "!",
                     "You scored " + correctCount.get() + "/" + questions.size() + "(" + percentage + ")"
-            ).forEach(System.out::println);
+            ).forEach(session.getOut()::println);
+
+            // Store attempt to file, in order with the student's commands
+            try {
+                session.getCommandExecutor().submitAndWait(caller,
+                        () -> session.getStudents().recordAttempt(caller, attempt.build(percentage)));
+            } catch (final RejectedExecutionException ex) {
+                session.getOut().println("Too many commands are waiting, your attempt wasn't saved!");
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                session.stop();
+            }
+        }, false);
+
+        dispatcher.register("logout", (session, caller, args) -> {
+            // The student's session token can no longer be used
+            if (session.getCurrentPhase() instanceof LoggedInPhase) {
+                session.getTokens().revoke(((LoggedInPhase) session.getCurrentPhase()).getToken());
+            }
+            session.transitionToPhase(FergusMain.LOGIN_PHASE);
+        });
+    }
 
-            // Store attempt to file
-            caller.addAttempt(attempt.build(percentage));
-            FergusMain.get().updateStudentsFile();
+    /**
+     * Registers the administrator commands to the {@link CommandDispatcher}
+     * responsible for the logged in phase, if the provided {@link Student}
+     * has the necessary permissions.
+     *
+     * @param student    The student
+     * @param dispatcher The command dispatcher
+     */
+    public static void registerAdminCommands(final Student student,
+                                             final CommandDispatcher<Student> dispatcher) {
+        // Check the student has the right permissions
+        if (!student.isAdmin()) return;
+
+        dispatcher.register("export", (session, caller, args) -> {
+            // Clients over the network can't write files upon the server
+            if (session.isRemote()) {
+                session.getOut().println("The students can only be exported from the server's console!");
+                return;
+            }
+
+            // Get where to store the file (default: students.xml)
+            final Path exportPath = Paths.get(args.getFlag("o", "students.xml"));
+
+            StudentFormat.STAX.write(session.getStudents().copyStudents(), exportPath);
+            session.getOut().println("Exported the students to " + exportPath);
         });
 
-        dispatcher.register("logout", (caller, args) -> {
-            FergusMain.get().transitionToPhase(FergusMain.LOGIN_PHASE);
+        dispatcher.register("stats", (session, caller, args) -> {
+            final MailboxExecutor.Stats stats = session.getCommandExecutor().getStats();
+            Arrays.asList(
+                    "Command executor:",
+                    "  Students with commands waiting, or running: " + stats.getMailboxes(),
+                    "  Commands waiting: " + stats.getQueued(),
+                    "  Most commands waiting for a student: " + stats.getMaxDepth(),
+                    "  Commands submitted: " + stats.getSubmitted(),
+                    "  Commands completed: " + stats.getCompleted(),
+                    "  Commands rejected: " + stats.getRejected()
+            ).forEach(session.getOut()::println);
+
+            final SaltProvider.Stats salts = Student.getSaltProvider().getStats();
+            Arrays.asList(
+                    "Salt provider:",
+                    "  Salts served: " + salts.getServed(),
+                    "  Mean time to serve a salt: " + salts.getMeanNanos() + "ns",
+                    "  Longest time to serve a salt: " + salts.getMaxNanos() + "ns",
+                    "  Buffers refilled (" + salts.getBufferSize() + " bytes each): " + salts.getRefills(),
+                    "  Mean time to refill a buffer: " + salts.getMeanRefillNanos() + "ns",
+                    "  Salts that waited on a refill: " + salts.getStalls()
+            ).forEach(session.getOut()::println);
+            session.getOut().println("Password hashing: " + Student.getPasswordHashing().getCurrent().getName());
+
+            final SessionTokens.Stats tokens = session.getTokens().getStats();
+            Arrays.asList(
+                    "Session tokens:",
+                    "  Tokens held: " + tokens.getActive(),
+                    "  Tokens issued: " + tokens.getIssued(),
+                    "  Tokens accepted: " + tokens.getAccepted(),
+                    "  Tokens rejected: " + tokens.getRejected(),
+                    "  Tokens expired, or forgotten: " + tokens.getEvicted()
+            ).forEach(session.getOut()::println);
+
+            final QuestionBankCache.Stats questions = session.getSubjects().getCacheStats();
+            Arrays.asList(
+                    "Question banks:",
+                    "  Subjects loaded: " + questions.getSubjects(),
+                    "  Questions held: " + questions.getQuestions() + " (of " + questions.getCapacity() + ")",
+                    "  Quizzes of subjects already loaded: " + questions.getHits(),
+                    "  Quizzes of subjects that were loaded: " + questions.getMisses(),
+                    "  Subjects evicted: " + questions.getEvictions(),
+                    "  Mean time to load a subject: " + questions.getMeanLoadNanos() + "ns"
+            ).forEach(session.getOut()::println);
         });
     }
 
@@ -7,10 +7,10 @@
 
 package me.jamiemansfield.csnea.cli.command;
 
-import me.jamiemansfield.csnea.FergusMain;
 import me.jamiemansfield.csnea.util.command.CommandArgsReader;
 import me.jamiemansfield.csnea.command.CommandDispatcher;
 import me.jamiemansfield.csnea.cli.LoggedInPhase;
+import me.jamiemansfield.csnea.cli.Session;
 import me.jamiemansfield.csnea.model.Student;
 
 /**
@@ -27,10 +27,25 @@ public final class LoginPhaseCommands {
      */
     public static void registerCommands(final CommandDispatcher<Object> dispatcher) {
         // The login command
-        dispatcher.register("login", (caller, args) -> {
+        dispatcher.register("login", (session, caller, args) -> {
+            // Log in with a session token, issued by a previous login -
+            // which is checked without hashing the student's password
+            if (args.hasFlag("t")) {
+                final String token = args.getFlag("t");
+                final Student student = session.getTokens().validate(token);
+                if (student == null) {
+                    session.getOut().println("Session token is invalid, or has expired.");
+                    return;
+                }
+
+                // Enter the LoggedInPhase, with the same token
+                session.transitionToPhase(new LoggedInPhase(student, token));
+                return;
+            }
+
             // Check the user's input is valid
             if (args.getArgs().size() != 2) {
-                System.out.println("Invalid input. login <username> <password>");
+                session.getOut().println("Invalid input. login <username> <password>");
                 return;
             }
 
@@ -38,63 +53,68 @@ public final class LoginPhaseCommands {
             final String rawUsername = reader.next();
             final String rawPassword = reader.next();
 
-            // See if a user of that name exists
-            if (!FergusMain.get().hasStudentOfUsername(rawUsername)) {
-                // Do not inform whether the username or password was
-                // correct/incorrect as a matter of security
-                System.out.println("Username or Password is incorrect.");
-                return;
-            }
-
-            // Get the student object
-            final Student student = FergusMain.get().getStudent(rawUsername);
-
-            // See if the password is correct
-            if (!student.testPassword(rawPassword)) {
+            // Get the student object, if a user of that name exists and
+            // the password is correct
+            final Student student = session.getStudents().authenticate(rawUsername, rawPassword);
+            if (student == null) {
                 // Do not inform whether the username or password was
                 // correct/incorrect as a matter of security
-                System.out.println("Username or Password is incorrect.");
+                session.getOut().println("Username or Password is incorrect.");
                 return;
             }
 
             // Create, and enter, the LoggedInPhase for the student
-            FergusMain.get().transitionToPhase(new LoggedInPhase(student));
+            logIn(session, student);
         });
 
         // The signup command
-        dispatcher.register("signup", (caller, args) -> {
+        dispatcher.register("signup", (session, caller, args) -> {
             // Start the builder
             final Student.Builder builder = Student.builder();
 
             // First let's check if the student should be an admin
-            builder.admin(FergusMain.get().getStudents().size() == 0);
+            builder.admin(session.getStudents().size() == 0);
 
             // Get the fullname of the student
-            System.out.println("Enter your full name: ");
-            builder.fullname(FergusMain.get().getScanner().nextLine());
+            session.getOut().println("Enter your full name: ");
+            builder.fullname(session.getScanner().nextLine());
 
             // Get the age of the student
-            System.out.println("Enter your age: ");
-            builder.age(FergusMain.get().getScanner().nextInt());
+            session.getOut().println("Enter your age: ");
+            builder.age(session.getScanner().nextInt());
 
             // Get the yearGroup of the student
-            System.out.println("Enter your year group: ");
-            builder.yearGroup(FergusMain.get().getScanner().next());
+            session.getOut().println("Enter your year group: ");
+            builder.yearGroup(session.getScanner().next());
 
             // Get the password for the student
-            System.out.println("Enter your password: ");
-            builder.password(FergusMain.get().getScanner().next());
+            session.getOut().println("Enter your password: ");
+            builder.password(session.getScanner().next());
 
             // Register the student
             final Student student = builder.build();
-            System.out.println("Your username is: " + student.getUsername());
-            FergusMain.get().registerStudent(student);
+            session.getOut().println("Your username is: " + student.getUsername());
+            session.getStudents().register(student);
 
             // Create, and enter, the LoggedInPhase for the student
-            FergusMain.get().transitionToPhase(new LoggedInPhase(student));
+            logIn(session, student);
         });
     }
 
+    /**
+     * Issues a session token to the given student, and enters the
+     * {@link LoggedInPhase} for them.
+     *
+     * @param session The session
+     * @param student The student
+     */
+    private static void logIn(final Session session, final Student student) {
+        final String token = session.getTokens().issue(student);
+        session.getOut().println("Your session token is: " + token);
+        session.getOut().println("(login -t <token> logs in again, without your password)");
+        session.transitionToPhase(new LoggedInPhase(student, token));
+    }
+
     private LoginPhaseCommands() {
     }
 
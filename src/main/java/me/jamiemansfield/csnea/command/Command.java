@@ -7,6 +7,8 @@
 
 package me.jamiemansfield.csnea.command;
 
+import me.jamiemansfield.csnea.cli.Session;
+
 /**
  * An interface used to describe a command, in the command system.
  *
@@ -19,14 +21,16 @@ package me.jamiemansfield.csnea.command;
 public interface Command<C> {
 
     /**
-     * Executes the command, with the caller, and the arguments.
+     * Executes the command, within the session, with the caller, and the
+     * arguments.
      *
      * <strong>The arguments provided should not include the command
      * name!</strong>
      *
+     * @param session The session the command is executed within
      * @param caller The caller of the command
      * @param args The arguments executed with
      */
-    void execute(final C caller, final CommandArgs args);
+    void execute(final Session session, final C caller, final CommandArgs args);
 
 }
@@ -85,6 +85,10 @@ public final class CommandArgs {
                 }
             }
         }
+        // The last flag had no value
+        if (flag != null) {
+            this.flags.put(flag, "");
+        }
     }
 
     /**
@@ -7,9 +7,14 @@
 
 package me.jamiemansfield.csnea.command;
 
+import me.jamiemansfield.csnea.cli.Session;
+
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * An object used for dispatching commands, implementing
@@ -24,38 +29,80 @@ public class CommandDispatcher<C> implements Command<C> {
      * inputted to the console.
      */
     private final Command<C> COMMAND_NOT_EXIST =
-            (caller, args) -> System.out.println("Invalid command!");
+            (session, caller, args) -> session.getOut().println("Invalid command!");
 
     private final Map<String, Command<C>> commands = new HashMap<>();
+    private final Set<String> unserialised = new HashSet<>();
 
     /**
-     * Registers the given name to the dispatcher.
+     * Registers the given name to the dispatcher, the command being run
+     * in order with the caller's other commands.
      *
      * @param name The name of the command
      * @param command The command
      * @return {@code this} for chaining
      */
     public CommandDispatcher<C> register(final String name, final Command<C> command) {
+        return this.register(name, command, true);
+    }
+
+    /**
+     * Registers the given name to the dispatcher.
+     *
+     * <p>Commands that wait upon the user shouldn't be serialised, as
+     * they would hold one of the command executor's threads meanwhile -
+     * they should instead submit their changes to the executor
+     * themselves.</p>
+     *
+     * @param name The name of the command
+     * @param command The command
+     * @param serialised Whether the command is run in order with the
+     *                   caller's other commands
+     * @return {@code this} for chaining
+     */
+    public CommandDispatcher<C> register(final String name, final Command<C> command, final boolean serialised) {
         this.commands.put(name, command);
+        if (!serialised) this.unserialised.add(name);
         return this;
     }
 
     /**
-     * Executes the command, with the caller, and the command line.
+     * Executes the command, within the session, with the caller, and the
+     * command line.
      *
+     * <p>Commands with a caller are run upon the session's command
+     * executor, so the commands of each caller run in order - one at a
+     * time - across every session.</p>
+     *
+     * @param session The session
      * @param caller The command caller
      * @param commandLine The raw console input
      */
-    public void execute(final C caller, final String commandLine) {
+    public void execute(final Session session, final C caller, final String commandLine) {
         // Split command line into arguments
-        final String[] args = commandLine.split(" ");
+        final CommandArgs args = new CommandArgs(commandLine.split(" "));
 
-        // Execute the command
-        this.execute(caller, new CommandArgs(args));
+        // Commands without a caller have nothing to race upon, and those
+        // not serialised run upon the session's own thread
+        if (caller == null || this.unserialised.contains(args.getRawArgs()[0])) {
+            this.execute(session, caller, args);
+            return;
+        }
+
+        // Execute the command after any other commands of the caller, one
+        // at a time
+        try {
+            session.getCommandExecutor().submitAndWait(caller, () -> this.execute(session, caller, args));
+        } catch (final RejectedExecutionException ex) {
+            session.getOut().println("Too many commands are waiting, please try again shortly.");
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            session.stop();
+        }
     }
 
     @Override
-    public void execute(final C caller, final CommandArgs args) {
+    public void execute(final Session session, final C caller, final CommandArgs args) {
         // Get the command name
         final String commandName = args.getRawArgs()[0];
 
@@ -67,7 +114,7 @@ public class CommandDispatcher<C> implements Command<C> {
                 Arrays.copyOfRange(args.getRawArgs(), 1, args.getRawArgs().length);
 
         // Execute the command
-        command.execute(caller, new CommandArgs(newArgs));
+        command.execute(session, caller, new CommandArgs(newArgs));
     }
 
 }
@@ -0,0 +1,115 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.http;
+
+import com.sun.net.httpserver.Authenticator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+import me.jamiemansfield.csnea.model.Student;
+import me.jamiemansfield.csnea.security.SessionTokens;
+import me.jamiemansfield.csnea.store.StudentRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * The authenticator of requests made to the HTTP API, accepting either
+ * a session token ({@code Authorization: Bearer <token>}), or the
+ * student's username and password ({@code Authorization: Basic ...}).
+ *
+ * <p>Tokens are checked without hashing the student's password, so
+ * clients should present the token issued by {@code /login} once they
+ * have it.</p>
+ *
+ * <p>The student authenticated is carried by the request's principal,
+ * so a token always resolves to the student it was issued to - not
+ * whichever student holds that username first.</p>
+ */
+final class ApiAuthenticator extends Authenticator {
+
+    private static final String REALM = "Fergus' Quiz";
+    private static final String BASIC = "Basic ";
+    private static final String BEARER = "Bearer ";
+
+    private final StudentRepository students;
+    private final SessionTokens tokens;
+
+    ApiAuthenticator(final StudentRepository students, final SessionTokens tokens) {
+        this.students = students;
+        this.tokens = tokens;
+    }
+
+    @Override
+    public Result authenticate(final HttpExchange exchange) {
+        final String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        final Student student;
+        if (authorization == null) {
+            student = null;
+        }
+        else if (authorization.startsWith(BEARER)) {
+            student = this.tokens.validate(authorization.substring(BEARER.length()).trim());
+        }
+        else if (authorization.startsWith(BASIC)) {
+            student = this.checkCredentials(authorization.substring(BASIC.length()).trim());
+        }
+        else {
+            student = null;
+        }
+
+        if (student == null) {
+            exchange.getResponseHeaders().set("WWW-Authenticate", "Basic realm=\"" + REALM + "\"");
+            return new Retry(401);
+        }
+        return new Success(new StudentPrincipal(student));
+    }
+
+    /**
+     * Checks the given, encoded, username and password.
+     *
+     * @param encoded The username and password, encoded with base64
+     * @return The student, or {@code null} should the credentials be
+     *         incorrect
+     */
+    private Student checkCredentials(final String encoded) {
+        final String credentials;
+        try {
+            credentials = new String(Base64.getDecoder().decode(encoded), StandardCharsets.UTF_8);
+        } catch (final IllegalArgumentException ex) {
+            return null;
+        }
+
+        final int split = credentials.indexOf(':');
+        if (split < 0) return null;
+        return this.students.authenticate(credentials.substring(0, split), credentials.substring(split + 1));
+    }
+
+    /**
+     * The principal of a request, being the student it was authenticated
+     * as.
+     */
+    static final class StudentPrincipal extends HttpPrincipal {
+
+        private final Student student;
+
+        StudentPrincipal(final Student student) {
+            super(student.getUsername(), REALM);
+            this.student = student;
+        }
+
+        /**
+         * Gets the student the request was authenticated as.
+         *
+         * @return The student
+         */
+        Student getStudent() {
+            return this.student;
+        }
+
+    }
+
+}
@@ -0,0 +1,249 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.http;
+
+import me.jamiemansfield.csnea.Difficulty;
+import me.jamiemansfield.csnea.Grade;
+import me.jamiemansfield.csnea.cli.ReportGenerator;
+import me.jamiemansfield.csnea.cli.Session;
+import me.jamiemansfield.csnea.command.CommandArgs;
+import me.jamiemansfield.csnea.model.Attempt;
+import me.jamiemansfield.csnea.model.Question;
+import me.jamiemansfield.csnea.model.QuestionSampler;
+import me.jamiemansfield.csnea.model.Student;
+import me.jamiemansfield.csnea.model.Subject;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A class used to register all of the endpoints of the HTTP API, to
+ * the {@link FergusHttpServer}.
+ */
+final class ApiEndpoints {
+
+    /**
+     * Registers all of the endpoints to the server.
+     *
+     * @param server The server
+     */
+    static void registerEndpoints(final FergusHttpServer server) {
+        // Signing up a new student
+        server.register("/signup", request -> {
+            if (!request.isPost()) throw new ApiException(405, "Students sign up using POST!");
+
+            final int age;
+            try {
+                age = Integer.parseInt(request.getParam("age"));
+            } catch (final NumberFormatException ex) {
+                throw new ApiException(400, "Invalid age!");
+            }
+
+            // Usernames are formed from the first three letters of the
+            // full name
+            if (request.getParam("fullname").length() < 3) {
+                throw new ApiException(400, "Full names must be at least three letters!");
+            }
+
+            final Student student = Student.builder()
+                    // The first student is made an admin
+                    .admin(request.getStudents().size() == 0)
+                    .fullname(request.getParam("fullname"))
+                    .age(age)
+                    .yearGroup(request.getParam("yearGroup"))
+                    .password(request.getParam("password"))
+                    .build();
+            request.getStudents().register(student);
+
+            try (final JsonWriter json = request.respondJson(201)) {
+                json.beginObject()
+                        .name("username").value(student.getUsername())
+                        .endObject();
+            }
+        }, false);
+
+        // The student that is logged in, and a session token to present
+        // in place of their password
+        server.register("/login", request -> {
+            final Student student = request.getStudent();
+            final String token = request.getToken() != null ?
+                    request.getToken() :
+                    request.getTokens().issue(student);
+
+            try (final JsonWriter json = request.respondJson(200)) {
+                json.beginObject()
+                        .name("token").value(token)
+                        .name("username").value(student.getUsername())
+                        .name("fullname").value(student.getFullname())
+                        .name("age").value(student.getAge())
+                        .name("yearGroup").value(student.getYearGroup())
+                        .name("admin").value(student.isAdmin())
+                        .endObject();
+            }
+        });
+
+        // Revoking the session token the request was made with
+        server.register("/logout", request -> {
+            if (!request.isPost()) throw new ApiException(405, "Students log out using POST!");
+            if (request.getToken() == null) throw new ApiException(400, "Only session tokens can be logged out!");
+            request.getTokens().revoke(request.getToken());
+
+            try (final JsonWriter json = request.respondJson(200)) {
+                json.beginObject()
+                        .name("username").value(request.getStudent().getUsername())
+                        .endObject();
+            }
+        });
+
+        // The available subjects
+        server.register("/subjects", request -> {
+            try (final JsonWriter json = request.respondJson(200)) {
+                json.beginArray();
+                for (final Subject subject : request.getSubjects().values()) {
+                    json.beginObject()
+                            .name("id").value(subject.getId())
+                            .name("name").value(subject.getName())
+                            .endObject();
+                }
+                json.endArray();
+            }
+        });
+
+        // Fetching (GET), and answering (POST), a quiz - the questions are
+        // drawn from the seed given when fetched, which must be given back
+        // with the answers
+        server.register("/quiz", request -> {
+            final Subject subject = request.getSubjects().get(request.getParam("subject"))
+                    .orElseThrow(() -> new ApiException(404, "Invalid choice of subject!"));
+            final Difficulty difficulty = Difficulty.get(request.getParam("difficulty"))
+                    .orElseThrow(() -> new ApiException(404, "Invalid choice of difficulty!"));
+            final String rawSeed = request.isPost() ? request.getParam("seed") : request.getParams().get("seed");
+            final long seed;
+            try {
+                seed = rawSeed != null ? QuestionSampler.parseSeed(rawSeed) : QuestionSampler.newSeed();
+            } catch (final NumberFormatException ex) {
+                throw new ApiException(400, "Invalid seed: " + rawSeed);
+            }
+            final List<Question> questions = request.getSubjects().sample(subject, difficulty, seed);
+
+            // A quiz without questions can't be scored, so isn't recorded
+            if (questions.isEmpty()) {
+                throw new ApiException(404, "There are no questions of that subject and difficulty!");
+            }
+
+            if (!request.isPost()) {
+                try (final JsonWriter json = request.respondJson(200)) {
+                    json.beginObject()
+                            .name("subject").value(subject.getId())
+                            .name("difficulty").value(difficulty.getId())
+                            .name("seed").value(QuestionSampler.toString(seed))
+                            .name("questions").beginArray();
+                    // Only the questions, and their potential answers, are
+                    // given - the correct answers are kept to the server
+                    for (final Question question : questions) {
+                        json.beginObject()
+                                .name("title").value(question.getTitle())
+                                .name("answers").beginArray();
+                        for (final String answer : question.getAnswers()) {
+                            json.value(answer);
+                        }
+                        json.endArray().endObject();
+                    }
+                    json.endArray().endObject();
+                }
+                return;
+            }
+
+            // Read the answers, given in the order of the questions
+            final String[] answers = request.getParam("answers").split(",");
+            if (answers.length != questions.size()) {
+                throw new ApiException(400, "Expected " + questions.size() + " answers!");
+            }
+
+            // Check the student's answers
+            int correctCount = 0;
+            for (int i = 0; i < questions.size(); i++) {
+                try {
+                    if (Integer.parseInt(answers[i].trim()) == questions.get(i).getCorrectAnswer()) {
+                        correctCount++;
+                    }
+                } catch (final NumberFormatException ex) {
+                    throw new ApiException(400, "Invalid answer: " + answers[i]);
+                }
+            }
+
+            // Establish the percentage achieved
+            final int percentage = Math.round(correctCount * 100f / questions.size());
+            final Grade grade = Grade.of(percentage);
+
+            // Store the attempt, in order with the student's commands
+            final Student student = request.getStudent();
+            final Attempt attempt = Attempt.builder()
+                    .subject(subject)
+                    .difficulty(difficulty)
+                    .build(percentage);
+            try {
+                request.getCommandExecutor().submitAndWait(student,
+                        () -> request.getStudents().recordAttempt(student, attempt));
+            } catch (final RejectedExecutionException ex) {
+                throw new ApiException(503, "Too many commands are waiting, please try again shortly.");
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new ApiException(503, "The server is stopping!");
+            }
+
+            try (final JsonWriter json = request.respondJson(200)) {
+                json.beginObject()
+                        .name("correct").value(correctCount)
+                        .name("total").value(questions.size())
+                        .name("percentage").value(percentage)
+                        .name("grade").value(grade.getText())
+                        .endObject();
+            }
+        });
+
+        // Running a report, the parameters being those of the report command
+        server.register("/report", request -> {
+            if (!request.getStudent().isAdmin()) {
+                throw new ApiException(403, "Reports are only available to administrators!");
+            }
+
+            final ReportGenerator generator = ReportGenerator.get(request.getParam("g"))
+                    .orElseThrow(() -> new ApiException(404, "Invalid report generator selection!"));
+
+            // The generators report invalid selections to the session's
+            // output, so give them a session to do so
+            final ByteArrayOutputStream errors = new ByteArrayOutputStream();
+            final Session session = new Session(new ByteArrayInputStream(new byte[0]),
+                    new PrintStream(errors, true), request.getStudents(), request.getSubjects(),
+                    request.getCommandExecutor(), request.getTokens(), true);
+
+            final ByteArrayOutputStream report = new ByteArrayOutputStream();
+            try (final PrintWriter writer = new PrintWriter(report)) {
+                generator.report(session, writer, new CommandArgs(request.getParams(), new String[0]));
+            }
+            if (errors.size() > 0) {
+                throw new ApiException(400, new String(errors.toByteArray(), StandardCharsets.UTF_8).trim());
+            }
+
+            try (final OutputStream os = request.respond(200, "text/markdown; charset=utf-8")) {
+                report.writeTo(os);
+            }
+        });
+    }
+
+    private ApiEndpoints() {
+    }
+
+}
@@ -0,0 +1,40 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.http;
+
+/**
+ * An exception thrown by an {@link Endpoint}, should the request not be
+ * satisfiable - the message of which is given to the client.
+ */
+final class ApiException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+
+    /**
+     * Creates an exception, with the HTTP status to respond with.
+     *
+     * @param status  The HTTP status
+     * @param message The message for the client
+     */
+    ApiException(final int status, final String message) {
+        super(message);
+        this.status = status;
+    }
+
+    /**
+     * Gets the HTTP status to respond with.
+     *
+     * @return The HTTP status
+     */
+    int getStatus() {
+        return this.status;
+    }
+
+}
@@ -0,0 +1,239 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+import me.jamiemansfield.csnea.model.Student;
+import me.jamiemansfield.csnea.model.SubjectRegistry;
+import me.jamiemansfield.csnea.security.SessionTokens;
+import me.jamiemansfield.csnea.store.StudentRepository;
+import me.jamiemansfield.csnea.util.concurrent.MailboxExecutor;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A request made to the HTTP API, along with the services shared
+ * between every request.
+ */
+final class ApiRequest {
+
+    /**
+     * The largest request body that will be read, in bytes - set by the
+     * {@code fergus.http.maxBody} system property (default: 64 KiB).
+     */
+    private static final int MAX_BODY = Integer.getInteger("fergus.http.maxBody", 64 * 1024);
+
+    private final HttpExchange exchange;
+    private final StudentRepository students;
+    private final SubjectRegistry subjects;
+    private final MailboxExecutor<Object> commandExecutor;
+    private final SessionTokens tokens;
+    private final Map<String, String> params = new HashMap<>();
+
+    ApiRequest(final HttpExchange exchange, final StudentRepository students, final SubjectRegistry subjects,
+               final MailboxExecutor<Object> commandExecutor, final SessionTokens tokens) throws IOException {
+        this.exchange = exchange;
+        this.students = students;
+        this.subjects = subjects;
+        this.commandExecutor = commandExecutor;
+        this.tokens = tokens;
+
+        // Read the parameters from the query, and from a form body
+        readParams(exchange.getRequestURI().getRawQuery(), this.params);
+        try (final InputStream body = exchange.getRequestBody()) {
+            // Refuse bodies too large before reading them, where the length
+            // is given - and otherwise once too much has been read
+            final String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+            if (contentLength != null && parseLength(contentLength) > MAX_BODY) {
+                throw new ApiException(413, "The request body is too large!");
+            }
+
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[1024];
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                baos.write(buffer, 0, read);
+                if (baos.size() > MAX_BODY) throw new ApiException(413, "The request body is too large!");
+            }
+            readParams(new String(baos.toByteArray(), StandardCharsets.UTF_8), this.params);
+        }
+    }
+
+    private static long parseLength(final String raw) {
+        try {
+            return Long.parseLong(raw.trim());
+        } catch (final NumberFormatException ex) {
+            throw new ApiException(400, "Malformed Content-Length!");
+        }
+    }
+
+    private static void readParams(final String raw, final Map<String, String> params) {
+        if (raw == null || raw.isEmpty()) return;
+        try {
+            for (final String pair : raw.split("&")) {
+                final int split = pair.indexOf('=');
+                if (split < 0) {
+                    params.put(URLDecoder.decode(pair, "UTF-8"), "");
+                }
+                else {
+                    params.put(URLDecoder.decode(pair.substring(0, split), "UTF-8"),
+                            URLDecoder.decode(pair.substring(split + 1), "UTF-8"));
+                }
+            }
+        } catch (final UnsupportedEncodingException ex) {
+            throw new RuntimeException("Failed to decode the request parameters!", ex);
+        } catch (final IllegalArgumentException ex) {
+            throw new ApiException(400, "Malformed request parameters!");
+        }
+    }
+
+    /**
+     * Establishes whether the request was made using the POST method.
+     *
+     * @return {@code true} if the request is a POST;
+     *         {@code false} otherwise
+     */
+    boolean isPost() {
+        return "POST".equalsIgnoreCase(this.exchange.getRequestMethod());
+    }
+
+    /**
+     * Gets an immutable-view of the request's parameters, from both its
+     * query and its body.
+     *
+     * @return The parameters
+     */
+    Map<String, String> getParams() {
+        return Collections.unmodifiableMap(this.params);
+    }
+
+    /**
+     * Gets the value of the given parameter.
+     *
+     * @param name The name of the parameter
+     * @return The parameter's value
+     * @throws ApiException Should the parameter not be present
+     */
+    String getParam(final String name) {
+        final String value = this.params.get(name);
+        if (value == null) throw new ApiException(400, "The " + name + " parameter is required!");
+        return value;
+    }
+
+    /**
+     * Gets the student that made the request, as authenticated by the
+     * server.
+     *
+     * @return The student
+     */
+    Student getStudent() {
+        // Requests are only ever authenticated by ApiAuthenticator
+        final HttpPrincipal principal = this.exchange.getPrincipal();
+        if (!(principal instanceof ApiAuthenticator.StudentPrincipal)) {
+            throw new ApiException(401, "Username or Password is incorrect.");
+        }
+        return ((ApiAuthenticator.StudentPrincipal) principal).getStudent();
+    }
+
+    /**
+     * Gets the session token the request was authenticated with.
+     *
+     * @return The token, or {@code null} should the request have been
+     *         authenticated by password
+     */
+    String getToken() {
+        final String authorization = this.exchange.getRequestHeaders().getFirst("Authorization");
+        if (authorization == null || !authorization.startsWith("Bearer ")) return null;
+        return authorization.substring("Bearer ".length()).trim();
+    }
+
+    /**
+     * Gets the store of the students.
+     *
+     * @return The student store
+     */
+    StudentRepository getStudents() {
+        return this.students;
+    }
+
+    /**
+     * Gets the registry of the subjects.
+     *
+     * @return The subject registry
+     */
+    SubjectRegistry getSubjects() {
+        return this.subjects;
+    }
+
+    /**
+     * Gets the executor of commands, which runs the changes made for
+     * each student in order.
+     *
+     * @return The command executor
+     */
+    MailboxExecutor<Object> getCommandExecutor() {
+        return this.commandExecutor;
+    }
+
+    /**
+     * Gets the session tokens, issued to students as they log in.
+     *
+     * @return The session tokens
+     */
+    SessionTokens getTokens() {
+        return this.tokens;
+    }
+
+    /**
+     * Begins the response to the request, streaming its body.
+     *
+     * @param status      The HTTP status
+     * @param contentType The type of the body
+     * @return The stream to write the body to
+     */
+    OutputStream respond(final int status, final String contentType) throws IOException {
+        return respond(this.exchange, status, contentType);
+    }
+
+    /**
+     * Begins a JSON response to the request, streaming its body.
+     *
+     * @param status The HTTP status
+     * @return The writer to write the body with
+     */
+    JsonWriter respondJson(final int status) throws IOException {
+        return respondJson(this.exchange, status);
+    }
+
+    static OutputStream respond(final HttpExchange exchange, final int status, final String contentType)
+            throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        // The length isn't known yet, so the body is sent chunked - which
+        // allows the connection to be kept alive
+        exchange.sendResponseHeaders(status, 0);
+        return exchange.getResponseBody();
+    }
+
+    static JsonWriter respondJson(final HttpExchange exchange, final int status) throws IOException {
+        return new JsonWriter(new BufferedWriter(new OutputStreamWriter(
+                respond(exchange, status, "application/json; charset=utf-8"), StandardCharsets.UTF_8)));
+    }
+
+}
@@ -0,0 +1,26 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.http;
+
+import java.io.IOException;
+
+/**
+ * An endpoint of the HTTP API.
+ */
+@FunctionalInterface
+interface Endpoint {
+
+    /**
+     * Handles the given request, responding to it.
+     *
+     * @param request The request
+     * @throws ApiException Should the request not be satisfiable
+     */
+    void handle(final ApiRequest request) throws IOException;
+
+}
@@ -0,0 +1,189 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.http;
+
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpServer;
+import me.jamiemansfield.csnea.model.SubjectRegistry;
+import me.jamiemansfield.csnea.security.SessionTokens;
+import me.jamiemansfield.csnea.store.StudentRepository;
+import me.jamiemansfield.csnea.util.concurrent.MailboxExecutor;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A HTTP server for Fergus' Quiz, serving a JSON API that a web front
+ * end can drive quizzes through.
+ *
+ * <p>Every request, other than signing up, is authenticated using HTTP
+ * Basic authentication, with the student's username and password - or
+ * the session token issued by {@code /login}, as a Bearer token.</p>
+ *
+ * <p>Requests are handled by a bounded pool of threads - should every
+ * thread be busy, and the queue of waiting requests be full, the
+ * server's own thread handles the request, holding back the accepting
+ * of further requests until it has done so.</p>
+ */
+public final class FergusHttpServer implements Runnable {
+
+    static {
+        // Send each chunk of a streamed response straight away - otherwise
+        // the chunks wait upon the client acknowledging the last, which
+        // it delays
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer server;
+    private final ThreadPoolExecutor executor;
+    private final StudentRepository students;
+    private final SubjectRegistry subjects;
+    private final MailboxExecutor<Object> commandExecutor;
+    private final SessionTokens tokens;
+    private final ApiAuthenticator authenticator;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    /**
+     * Creates a HTTP server, listening on the given port.
+     *
+     * @param port     The port
+     * @param threads  The number of threads handling requests
+     * @param queue    The number of requests that may wait for a thread
+     * @param students The student store
+     * @param subjects The subject registry
+     * @param commandExecutor The executor of commands, which runs the changes
+     *                        made for each student in order
+     * @param tokens   The session tokens
+     */
+    public FergusHttpServer(final int port, final int threads, final int queue,
+                            final StudentRepository students, final SubjectRegistry subjects,
+                            final MailboxExecutor<Object> commandExecutor, final SessionTokens tokens) {
+        this.students = students;
+        this.subjects = subjects;
+        this.commandExecutor = commandExecutor;
+        this.tokens = tokens;
+        this.authenticator = new ApiAuthenticator(students, tokens);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queue), new HttpThreadFactory(), new ThreadPoolExecutor.CallerRunsPolicy());
+        try {
+            this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to start the HTTP server on port " + port + "!", ex);
+        }
+        this.server.setExecutor(this.executor);
+
+        // Register the endpoints
+        ApiEndpoints.registerEndpoints(this);
+    }
+
+    /**
+     * Registers the given endpoint to the given path, requiring the
+     * requests made to it to be authenticated.
+     *
+     * @param path     The path of the endpoint
+     * @param endpoint The endpoint
+     */
+    void register(final String path, final Endpoint endpoint) {
+        this.register(path, endpoint, true);
+    }
+
+    /**
+     * Registers the given endpoint to the given path.
+     *
+     * @param path          The path of the endpoint
+     * @param endpoint      The endpoint
+     * @param authenticated Whether requests must be authenticated
+     */
+    void register(final String path, final Endpoint endpoint, final boolean authenticated) {
+        final HttpContext context = this.server.createContext(path, exchange -> {
+            try {
+                // Contexts match on the start of the path, only handle
+                // the exact path
+                if (!Objects.equals(exchange.getRequestURI().getPath(), path)) {
+                    throw new ApiException(404, "No such endpoint!");
+                }
+
+                endpoint.handle(new ApiRequest(exchange, this.students, this.subjects, this.commandExecutor,
+                        this.tokens));
+            } catch (final ApiException ex) {
+                try (final JsonWriter json = ApiRequest.respondJson(exchange, ex.getStatus())) {
+                    json.beginObject()
+                            .name("error").value(ex.getMessage())
+                            .endObject();
+                }
+            } catch (final RuntimeException ex) {
+                System.err.println("Failed to handle " + exchange.getRequestURI() + ": " + ex);
+                try (final JsonWriter json = ApiRequest.respondJson(exchange, 500)) {
+                    json.beginObject()
+                            .name("error").value("Internal server error!")
+                            .endObject();
+                }
+            } finally {
+                exchange.close();
+            }
+        });
+        if (!authenticated) return;
+        context.setAuthenticator(this.authenticator);
+    }
+
+    /**
+     * Runs the server, until it is stopped.
+     */
+    @Override
+    public void run() {
+        this.server.start();
+        System.out.println("Fergus' Quiz is serving HTTP on " + this.server.getAddress());
+
+        try {
+            this.stopped.await();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops the server, waiting briefly for the requests being handled
+     * to complete.
+     */
+    public void stop() {
+        this.server.stop(1);
+        this.executor.shutdown();
+        try {
+            this.executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        this.stopped.countDown();
+    }
+
+    /**
+     * Creates the daemon threads that requests are handled upon.
+     */
+    private static final class HttpThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "Fergus HTTP #" + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+}
@@ -0,0 +1,204 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A writer of JSON, writing each value as it is given - rather than
+ * building the whole document in memory first.
+ */
+final class JsonWriter implements Closeable {
+
+    private final Writer writer;
+
+    // Whether each of the open objects, and arrays, has had a value
+    // written to it yet
+    private final Deque<Boolean> scopes = new ArrayDeque<>();
+
+    // Whether a name has been written, and is awaiting its value
+    private boolean named = false;
+
+    /**
+     * Creates a JSON writer, writing to the given writer.
+     *
+     * @param writer The writer
+     */
+    JsonWriter(final Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Begins a JSON object.
+     *
+     * @return {@code this}, for chaining
+     */
+    JsonWriter beginObject() throws IOException {
+        this.beforeValue();
+        this.writer.write('{');
+        this.scopes.push(false);
+        return this;
+    }
+
+    /**
+     * Ends the current JSON object.
+     *
+     * @return {@code this}, for chaining
+     */
+    JsonWriter endObject() throws IOException {
+        this.scopes.pop();
+        this.writer.write('}');
+        return this;
+    }
+
+    /**
+     * Begins a JSON array.
+     *
+     * @return {@code this}, for chaining
+     */
+    JsonWriter beginArray() throws IOException {
+        this.beforeValue();
+        this.writer.write('[');
+        this.scopes.push(false);
+        return this;
+    }
+
+    /**
+     * Ends the current JSON array.
+     *
+     * @return {@code this}, for chaining
+     */
+    JsonWriter endArray() throws IOException {
+        this.scopes.pop();
+        this.writer.write(']');
+        return this;
+    }
+
+    /**
+     * Writes the name of the next member of the current object.
+     *
+     * @param name The name
+     * @return {@code this}, for chaining
+     */
+    JsonWriter name(final String name) throws IOException {
+        this.beforeValue();
+        this.string(name);
+        this.writer.write(':');
+        this.named = true;
+        return this;
+    }
+
+    /**
+     * Writes a string value, or {@code null}.
+     *
+     * @param value The value
+     * @return {@code this}, for chaining
+     */
+    JsonWriter value(final String value) throws IOException {
+        this.beforeValue();
+        if (value == null) {
+            this.writer.write("null");
+        }
+        else {
+            this.string(value);
+        }
+        return this;
+    }
+
+    /**
+     * Writes a number value.
+     *
+     * @param value The value
+     * @return {@code this}, for chaining
+     */
+    JsonWriter value(final long value) throws IOException {
+        this.beforeValue();
+        this.writer.write(Long.toString(value));
+        return this;
+    }
+
+    /**
+     * Writes a number value, or {@code null} should it not be finite.
+     *
+     * @param value The value
+     * @return {@code this}, for chaining
+     */
+    JsonWriter value(final double value) throws IOException {
+        this.beforeValue();
+        this.writer.write(Double.isFinite(value) ? Double.toString(value) : "null");
+        return this;
+    }
+
+    /**
+     * Writes a boolean value.
+     *
+     * @param value The value
+     * @return {@code this}, for chaining
+     */
+    JsonWriter value(final boolean value) throws IOException {
+        this.beforeValue();
+        this.writer.write(value ? "true" : "false");
+        return this;
+    }
+
+    private void beforeValue() throws IOException {
+        // The value of a member, following its name
+        if (this.named) {
+            this.named = false;
+            return;
+        }
+
+        // Separate the value from the previous value in the scope
+        if (!this.scopes.isEmpty()) {
+            if (this.scopes.pop()) this.writer.write(',');
+            this.scopes.push(true);
+        }
+    }
+
+    private void string(final String value) throws IOException {
+        this.writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    this.writer.write("\\\"");
+                    break;
+                case '\\':
+                    this.writer.write("\\\\");
+                    break;
+                case '\n':
+                    this.writer.write("\\n");
+                    break;
+                case '\r':
+                    this.writer.write("\\r");
+                    break;
+                case '\t':
+                    this.writer.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        this.writer.write(String.format("\\u%04x", (int) c));
+                    }
+                    else {
+                        this.writer.write(c);
+                    }
+            }
+        }
+        this.writer.write('"');
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.writer.close();
+    }
+
+}
@@ -43,6 +43,19 @@ public class Attempt {
         this.percentage = 0;
     }
 
+    /**
+     * Creates an attempt from its previously persisted values.
+     *
+     * @param subject    The identifier of the subject
+     * @param difficulty The difficulty
+     * @param percentage The percentage the student attained
+     */
+    public Attempt(final String subject, final Difficulty difficulty, final int percentage) {
+        this.subject    = subject;
+        this.difficulty = difficulty;
+        this.percentage = percentage;
+    }
+
     /**
      * Creates the attempt from the builder.
      *
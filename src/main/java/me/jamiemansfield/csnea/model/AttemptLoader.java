@@ -0,0 +1,35 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.model;
+
+import java.util.List;
+
+/**
+ * A loader for the attempts of a {@link Student}, whose attempts are
+ * only read from the store when they are first needed.
+ */
+public interface AttemptLoader {
+
+    /**
+     * Loads the attempts the given student has made.
+     *
+     * @param student The student
+     * @return The attempts
+     */
+    List<Attempt> load(final Student student);
+
+    /**
+     * Called whenever the attempts of the given student are used, so
+     * the loader can keep track of which students' attempts are in use.
+     *
+     * @param student The student
+     */
+    default void accessed(final Student student) {
+    }
+
+}
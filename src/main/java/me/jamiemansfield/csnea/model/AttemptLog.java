@@ -0,0 +1,173 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.model;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An append-only log of a student's quiz attempts, safe for use by many
+ * threads at once.
+ *
+ * <p>Attempts are appended without locking - each claims the next slot,
+ * fills it, and then publishes every filled slot up to the first yet to
+ * be filled. Readers take a {@link #snapshot()}, a view of the attempts
+ * published at that moment, which never changes and is never copied.</p>
+ *
+ * <p>The attempts are held in segments, each twice the size of the one
+ * before, so the log never has to be copied to grow.</p>
+ */
+public final class AttemptLog extends AbstractList<Attempt> implements RandomAccess {
+
+    private static final int FIRST_SEGMENT = 8;
+    private static final int SEGMENTS = 28;
+
+    private final AtomicReferenceArray<AtomicReferenceArray<Attempt>> segments =
+            new AtomicReferenceArray<>(SEGMENTS);
+
+    // The number of slots claimed by writers
+    private final AtomicInteger claimed = new AtomicInteger();
+
+    // The number of slots, from the start of the log, that are filled
+    // and visible to readers
+    private final AtomicInteger published = new AtomicInteger();
+
+    /**
+     * Creates an empty attempt log.
+     */
+    public AttemptLog() {
+    }
+
+    /**
+     * Creates an attempt log, of the given attempts.
+     *
+     * @param attempts The attempts
+     */
+    public AttemptLog(final Collection<Attempt> attempts) {
+        attempts.forEach(this::append);
+    }
+
+    /**
+     * Appends the given attempt to the log.
+     *
+     * @param attempt The attempt
+     */
+    public void append(final Attempt attempt) {
+        if (attempt == null) throw new NullPointerException("attempt");
+
+        // Claim, and fill, the next slot
+        final int index = this.claimed.getAndIncrement();
+        final int segment = segmentOf(index);
+        this.segment(segment).set(index - startOf(segment), attempt);
+
+        // Publish the filled slots - should a slot before this one be yet
+        // to be filled, its writer will publish this one once it has
+        int published;
+        while ((published = this.published.get()) < this.claimed.get() && this.slot(published) != null) {
+            this.published.compareAndSet(published, published + 1);
+        }
+    }
+
+    /**
+     * Gets a view of the attempts published so far, which will not change
+     * as further attempts are appended.
+     *
+     * @return The snapshot
+     */
+    public List<Attempt> snapshot() {
+        return new Snapshot(this.published.get());
+    }
+
+    @Override
+    public Attempt get(final int index) {
+        if (index < 0 || index >= this.published.get()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size());
+        }
+        return this.slot(index);
+    }
+
+    @Override
+    public int size() {
+        return this.published.get();
+    }
+
+    /**
+     * Appends the given attempt to the log, as {@link #append(Attempt)}.
+     *
+     * @param attempt The attempt
+     * @return {@code true}
+     */
+    @Override
+    public boolean add(final Attempt attempt) {
+        this.append(attempt);
+        return true;
+    }
+
+    /**
+     * Attempts can't be removed from the log, so this only succeeds
+     * should the log be empty.
+     */
+    @Override
+    public void clear() {
+        if (!this.isEmpty()) throw new UnsupportedOperationException("Attempts can't be removed from the log!");
+    }
+
+    private Attempt slot(final int index) {
+        final int segment = segmentOf(index);
+        final AtomicReferenceArray<Attempt> slots = this.segments.get(segment);
+        return slots == null ? null : slots.get(index - startOf(segment));
+    }
+
+    private AtomicReferenceArray<Attempt> segment(final int segment) {
+        final AtomicReferenceArray<Attempt> slots = this.segments.get(segment);
+        if (slots != null) return slots;
+
+        // Should another writer create the segment first, use theirs
+        this.segments.compareAndSet(segment, null, new AtomicReferenceArray<>(FIRST_SEGMENT << segment));
+        return this.segments.get(segment);
+    }
+
+    private static int segmentOf(final int index) {
+        return 31 - Integer.numberOfLeadingZeros(index / FIRST_SEGMENT + 1);
+    }
+
+    private static int startOf(final int segment) {
+        return FIRST_SEGMENT * ((1 << segment) - 1);
+    }
+
+    /**
+     * A view of the attempts published, at the time it was taken.
+     */
+    private final class Snapshot extends AbstractList<Attempt> implements RandomAccess {
+
+        private final int size;
+
+        Snapshot(final int size) {
+            this.size = size;
+        }
+
+        @Override
+        public Attempt get(final int index) {
+            if (index < 0 || index >= this.size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+            }
+            return slot(index);
+        }
+
+        @Override
+        public int size() {
+            return this.size;
+        }
+
+    }
+
+}
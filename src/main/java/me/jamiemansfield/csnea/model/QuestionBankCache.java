@@ -0,0 +1,318 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.model;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of the subjects' question definitions, loaded when a subject
+ * is first quizzed upon.
+ *
+ * <p>The cache is bounded by the number of questions it holds - should
+ * it hold more, the definitions of the least recently used subjects are
+ * evicted, to be loaded again should they be needed. The questions of
+ * question packs are read from the pack as they are needed, so aren't
+ * counted.</p>
+ */
+public final class QuestionBankCache {
+
+    private final int capacity;
+
+    // The loaded definitions, in the order they were last used - guarded
+    // by itself
+    private final Map<String, Entry> definitions = new LinkedHashMap<>(16, 0.75f, true);
+    private int questions = 0;
+
+    // The generation of each subject's definitions, advanced whenever
+    // they are reloaded or invalidated - so definitions loaded before then
+    // aren't held (guarded by the definitions)
+    private final Map<String, Long> generations = new HashMap<>();
+
+    // The definitions being loaded, so a subject is only loaded once
+    // should many students quiz upon it at once
+    private final Map<String, FutureTask<QuestionDefinitions>> loading = new ConcurrentHashMap<>();
+
+    // Metrics
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong loadNanos = new AtomicLong();
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param capacity The most questions the cache may hold, though the
+     *                 definitions of the subject most recently used are
+     *                 always held
+     */
+    public QuestionBankCache(final int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Gets the question definitions of the given subject, loading them
+     * should they not be held.
+     *
+     * @param subject The subject
+     * @return The question definitions
+     */
+    public QuestionDefinitions get(final Subject subject) {
+        synchronized (this.definitions) {
+            final Entry entry = this.definitions.get(subject.getId());
+            if (entry != null) {
+                this.hits.incrementAndGet();
+                return entry.definitions;
+            }
+        }
+        this.misses.incrementAndGet();
+        return this.load(subject);
+    }
+
+    /**
+     * Loads the question definitions of the given subject, so it needn't
+     * be loaded when it is first quizzed upon.
+     *
+     * @param subject The subject
+     */
+    public void preload(final Subject subject) {
+        this.load(subject);
+    }
+
+    /**
+     * Loads the question definitions of the given subject again, replacing
+     * those held - should the definitions fail to load, those held are
+     * kept.
+     *
+     * @param subject The subject
+     */
+    public void reload(final Subject subject) {
+        // Loads already begun may have read the old definitions, so they
+        // mustn't be held, or be waited upon
+        final long generation;
+        synchronized (this.definitions) {
+            generation = this.generations.merge(subject.getId(), 1L, Long::sum);
+        }
+        this.loading.remove(subject.getId());
+
+        final long start = System.nanoTime();
+        final QuestionDefinitions definitions = subject.loadDefinitions();
+        this.loadNanos.addAndGet(System.nanoTime() - start);
+        this.loads.incrementAndGet();
+
+        this.put(subject.getId(), definitions, generation);
+    }
+
+    /**
+     * Forgets the question definitions of the given subject, should they
+     * be held.
+     *
+     * @param subject The subject
+     */
+    public void invalidate(final Subject subject) {
+        synchronized (this.definitions) {
+            this.generations.merge(subject.getId(), 1L, Long::sum);
+            final Entry removed = this.definitions.remove(subject.getId());
+            if (removed != null) this.questions -= removed.questions;
+        }
+    }
+
+    private QuestionDefinitions load(final Subject subject) {
+        // Load outside of the lock, so other subjects can be used meanwhile
+        final FutureTask<QuestionDefinitions> task = new FutureTask<>(subject::loadDefinitions);
+        final FutureTask<QuestionDefinitions> existing = this.loading.putIfAbsent(subject.getId(), task);
+        if (existing != null) return await(existing);
+
+        try {
+            final long generation;
+            synchronized (this.definitions) {
+                generation = this.generations.getOrDefault(subject.getId(), 0L);
+            }
+
+            final long start = System.nanoTime();
+            task.run();
+            final QuestionDefinitions definitions = await(task);
+            this.loadNanos.addAndGet(System.nanoTime() - start);
+            this.loads.incrementAndGet();
+
+            this.put(subject.getId(), definitions, generation);
+            return definitions;
+        } finally {
+            this.loading.remove(subject.getId(), task);
+        }
+    }
+
+    private void put(final String id, final QuestionDefinitions definitions, final long generation) {
+        final Entry entry = new Entry(definitions);
+        synchronized (this.definitions) {
+            // The definitions have been reloaded, or invalidated, since
+            // these began loading
+            if (this.generations.getOrDefault(id, 0L) != generation) return;
+
+            final Entry previous = this.definitions.put(id, entry);
+            if (previous != null) this.questions -= previous.questions;
+            this.questions += entry.questions;
+
+            // Evict the least recently used, keeping those just loaded
+            final Iterator<Entry> it = this.definitions.values().iterator();
+            while (this.questions > this.capacity && this.definitions.size() > 1 && it.hasNext()) {
+                final Entry evicted = it.next();
+                if (evicted == entry) continue;
+                it.remove();
+                this.questions -= evicted.questions;
+                this.evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private static QuestionDefinitions await(final FutureTask<QuestionDefinitions> task) {
+        try {
+            return task.get();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while loading question definitions!", ex);
+        } catch (final ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) throw (RuntimeException) ex.getCause();
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
+    /**
+     * Gets a snapshot of the cache's metrics.
+     *
+     * @return The metrics
+     */
+    public Stats getStats() {
+        final int subjects;
+        final int questions;
+        synchronized (this.definitions) {
+            subjects = this.definitions.size();
+            questions = this.questions;
+        }
+        final long loads = this.loads.get();
+        return new Stats(subjects, questions, this.capacity, this.hits.get(), this.misses.get(),
+                this.evictions.get(), loads == 0 ? 0 : this.loadNanos.get() / loads);
+    }
+
+    /**
+     * The definitions of a subject, and the number of questions within
+     * them.
+     */
+    private static final class Entry {
+
+        private final QuestionDefinitions definitions;
+        private final int questions;
+
+        Entry(final QuestionDefinitions definitions) {
+            this.definitions = definitions;
+            this.questions = definitions instanceof QuestionPack.Definitions ? 0 :
+                    definitions.getEasy().size() + definitions.getMedium().size() + definitions.getHard().size();
+        }
+
+    }
+
+    /**
+     * A snapshot of the metrics of a {@link QuestionBankCache}.
+     */
+    public static final class Stats {
+
+        private final int subjects;
+        private final int questions;
+        private final int capacity;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long meanLoadNanos;
+
+        Stats(final int subjects, final int questions, final int capacity, final long hits, final long misses,
+              final long evictions, final long meanLoadNanos) {
+            this.subjects = subjects;
+            this.questions = questions;
+            this.capacity = capacity;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.meanLoadNanos = meanLoadNanos;
+        }
+
+        /**
+         * Gets the number of subjects whose definitions are held.
+         *
+         * @return The number of subjects
+         */
+        public int getSubjects() {
+            return this.subjects;
+        }
+
+        /**
+         * Gets the number of questions held, other than those of question
+         * packs.
+         *
+         * @return The number of questions
+         */
+        public int getQuestions() {
+            return this.questions;
+        }
+
+        /**
+         * Gets the most questions the cache may hold.
+         *
+         * @return The capacity
+         */
+        public int getCapacity() {
+            return this.capacity;
+        }
+
+        /**
+         * Gets the number of times the definitions wanted were held.
+         *
+         * @return The number of hits
+         */
+        public long getHits() {
+            return this.hits;
+        }
+
+        /**
+         * Gets the number of times the definitions wanted had to be
+         * loaded.
+         *
+         * @return The number of misses
+         */
+        public long getMisses() {
+            return this.misses;
+        }
+
+        /**
+         * Gets the number of times definitions were evicted, to make
+         * room for others.
+         *
+         * @return The number of evictions
+         */
+        public long getEvictions() {
+            return this.evictions;
+        }
+
+        /**
+         * Gets the mean time taken to load definitions.
+         *
+         * @return The mean load time, in nanoseconds
+         */
+        public long getMeanLoadNanos() {
+            return this.meanLoadNanos;
+        }
+
+    }
+
+}
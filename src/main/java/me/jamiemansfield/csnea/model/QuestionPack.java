@@ -0,0 +1,347 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.model;
+
+import me.jamiemansfield.csnea.Difficulty;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * A reader and writer for question packs, question definitions compiled
+ * to a binary file - from which the questions are read, as they are
+ * needed, through a memory-mapped file.
+ *
+ * <p>The file starts with a header of the {@link #MAGIC} number, the
+ * format {@link #VERSION}, and the offset table - the position of the
+ * first question, and the number of questions, of each
+ * {@link Difficulty}. The sections then follow, with no padding:</p>
+ *
+ * <ul>
+ *     <li>The questions, each a fixed-width record of its title's offset
+ *         in the string pool, its correct answer, and the range of its
+ *         answers.</li>
+ *     <li>The answers, each the offset of the answer in the string
+ *         pool.</li>
+ *     <li>The string pool, holding every distinct title and answer
+ *         once, each as its length and its UTF-8 bytes.</li>
+ * </ul>
+ *
+ * <p>Packs are replaced, rather than written over, so those already
+ * mapped are left as they were.</p>
+ */
+final class QuestionPack {
+
+    /**
+     * The extension of question pack files.
+     */
+    static final String EXTENSION = ".pack";
+
+    /**
+     * The magic number at the start of the file, 'FQQP'.
+     */
+    private static final int MAGIC = 0x46515150;
+
+    /**
+     * The version of the format, this should be incremented whenever
+     * the layout of the file changes.
+     */
+    private static final short VERSION = 1;
+
+    /**
+     * The size of the header, in bytes.
+     */
+    private static final int HEADER_SIZE = Integer.BYTES + 2 * Short.BYTES +
+            Difficulty.values().length * 2 * Integer.BYTES + 3 * Integer.BYTES;
+
+    /**
+     * The size of a question record, in bytes.
+     */
+    private static final int QUESTION_SIZE = 4 * Integer.BYTES;
+
+    /**
+     * Establishes whether the given file is a question pack, rather than
+     * question definitions XML.
+     *
+     * @param path The path of the file
+     * @return {@code true} if the file is a question pack,
+     *         {@code false} otherwise
+     */
+    static boolean isPack(final Path path) {
+        return path.getFileName().toString().endsWith(EXTENSION);
+    }
+
+    /**
+     * Opens the given question pack, through a memory-mapped file - the
+     * questions are only read as they are used.
+     *
+     * @param path The path of the question pack
+     * @return The question definitions
+     */
+    static QuestionDefinitions read(final Path path) {
+        final MappedByteBuffer buffer;
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to open the " + path + " file!", ex);
+        }
+
+        try {
+            // Check the header first
+            if (buffer.getInt() != MAGIC) {
+                throw new RuntimeException("The " + path + " file is not a question pack!");
+            }
+            final short version = buffer.getShort();
+            if (version != VERSION) {
+                throw new RuntimeException("The " + path + " file is of an unsupported version (" + version + ")!");
+            }
+            buffer.getShort(); // reserved
+
+            final int[] tableOffsets = new int[Difficulty.values().length];
+            final int[] tableCounts = new int[Difficulty.values().length];
+            for (int i = 0; i < tableOffsets.length; i++) {
+                tableOffsets[i] = buffer.getInt();
+                tableCounts[i] = buffer.getInt();
+            }
+            final int questionCount = buffer.getInt();
+            final int answerCount = buffer.getInt();
+            final int poolSize = buffer.getInt();
+
+            // Check the sections fit the file, the questions themselves
+            // are only checked as they are read
+            // (in longs, so corrupt sizes can't overflow)
+            final long answersStart = HEADER_SIZE + (long) questionCount * QUESTION_SIZE;
+            final long poolStart = answersStart + (long) answerCount * Integer.BYTES;
+            if (questionCount < 0 || answerCount < 0 || poolSize < 0 || poolStart + poolSize != buffer.capacity()) {
+                throw new RuntimeException("The " + path + " file is truncated, or corrupt!");
+            }
+            for (int i = 0; i < tableOffsets.length; i++) {
+                if (tableCounts[i] < 0 || tableOffsets[i] < HEADER_SIZE ||
+                        tableOffsets[i] + (long) tableCounts[i] * QUESTION_SIZE > answersStart) {
+                    throw new RuntimeException("The " + path + " file has an invalid offset table!");
+                }
+            }
+
+            final List<List<Question>> questions = new ArrayList<>(tableOffsets.length);
+            for (int i = 0; i < tableOffsets.length; i++) {
+                questions.add(new PackedQuestions(path, buffer, tableOffsets[i], tableCounts[i], (int) answersStart,
+                        (int) poolStart));
+            }
+            return new Definitions(questions.get(Difficulty.EASY.ordinal()),
+                    questions.get(Difficulty.MEDIUM.ordinal()), questions.get(Difficulty.HARD.ordinal()));
+        } catch (final IndexOutOfBoundsException | BufferUnderflowException ex) {
+            throw new RuntimeException("The " + path + " file is truncated, or corrupt!", ex);
+        }
+    }
+
+    /**
+     * Writes the given question definitions to a question pack,
+     * replacing any existing pack.
+     *
+     * @param definitions The question definitions
+     * @param path        The path of the question pack
+     */
+    static void write(final QuestionDefinitions definitions, final Path path) {
+        // Build the string pool, so each distinct string is only stored once
+        final Map<String, Integer> pool = new LinkedHashMap<>();
+        final List<byte[]> encoded = new ArrayList<>();
+        int poolSize = 0;
+        int questionCount = 0;
+        int answerCount = 0;
+        for (final Difficulty difficulty : Difficulty.values()) {
+            for (final Question question : definitions.get(difficulty)) {
+                poolSize += intern(pool, encoded, poolSize, question.getTitle());
+                for (final String answer : question.getAnswers()) {
+                    poolSize += intern(pool, encoded, poolSize, answer);
+                }
+                questionCount++;
+                answerCount += question.getAnswers().size();
+            }
+        }
+
+        // Write the header, questions and answers - the questions of
+        // each difficulty following those of the last
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        final ByteBuffer questions = ByteBuffer.allocate(questionCount * QUESTION_SIZE);
+        final ByteBuffer answers = ByteBuffer.allocate(answerCount * Integer.BYTES);
+        header.putInt(MAGIC);
+        header.putShort(VERSION);
+        header.putShort((short) 0); // reserved
+        int firstAnswer = 0;
+        for (final Difficulty difficulty : Difficulty.values()) {
+            final List<Question> difficultyQuestions = definitions.get(difficulty);
+            header.putInt(HEADER_SIZE + questions.position());
+            header.putInt(difficultyQuestions.size());
+
+            for (final Question question : difficultyQuestions) {
+                questions.putInt(pool.get(question.getTitle()));
+                questions.putInt(question.getCorrectAnswer());
+                questions.putInt(firstAnswer);
+                questions.putInt(question.getAnswers().size());
+                for (final String answer : question.getAnswers()) {
+                    answers.putInt(pool.get(answer));
+                }
+                firstAnswer += question.getAnswers().size();
+            }
+        }
+        header.putInt(questionCount);
+        header.putInt(answerCount);
+        header.putInt(poolSize);
+
+        // Write the string pool
+        final ByteBuffer strings = ByteBuffer.allocate(poolSize);
+        for (final byte[] bytes : encoded) {
+            strings.putInt(bytes.length);
+            strings.put(bytes);
+        }
+
+        // Write to another file, then move it in place - so any mapping
+        // of the existing pack isn't changed beneath its readers
+        final Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (final FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (final ByteBuffer buffer : new ByteBuffer[] { header, questions, answers, strings }) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            channel.force(true);
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to write the " + temp + " file!", ex);
+        }
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to replace the " + path + " file!", ex);
+        }
+    }
+
+    /**
+     * Adds the given string to the string pool, should it not already be
+     * there.
+     *
+     * @return The number of bytes added to the pool
+     */
+    private static int intern(final Map<String, Integer> pool, final List<byte[]> encoded, final int poolSize,
+                              final String string) {
+        if (pool.containsKey(string)) return 0;
+        final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        pool.put(string, poolSize);
+        encoded.add(bytes);
+        return Integer.BYTES + bytes.length;
+    }
+
+    /**
+     * The question definitions of a question pack.
+     */
+    static final class Definitions extends QuestionDefinitions {
+
+        Definitions(final List<Question> easy, final List<Question> medium, final List<Question> hard) {
+            super(easy, medium, hard);
+        }
+
+    }
+
+    /**
+     * The questions of a difficulty, each read from the question pack
+     * as it is got.
+     */
+    private static final class PackedQuestions extends AbstractList<Question> implements RandomAccess {
+
+        private final Path path;
+        private final ByteBuffer buffer;
+        private final int tableOffset;
+        private final int size;
+        private final int answersStart;
+        private final int poolStart;
+
+        PackedQuestions(final Path path, final ByteBuffer buffer, final int tableOffset, final int size,
+                        final int answersStart, final int poolStart) {
+            this.path = path;
+            this.buffer = buffer;
+            this.tableOffset = tableOffset;
+            this.size = size;
+            this.answersStart = answersStart;
+            this.poolStart = poolStart;
+        }
+
+        @Override
+        public Question get(final int index) {
+            if (index < 0 || index >= this.size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+            }
+
+            // Only absolute reads are used, so many quizzes may read
+            // the pack at once
+            try {
+                final int offset = this.tableOffset + index * QUESTION_SIZE;
+                final String title = this.string(this.buffer.getInt(offset));
+                final int correctAnswer = this.buffer.getInt(offset + Integer.BYTES);
+                final int firstAnswer = this.buffer.getInt(offset + 2 * Integer.BYTES);
+                final int answerCount = this.buffer.getInt(offset + 3 * Integer.BYTES);
+                if (firstAnswer < 0 || answerCount < 0 ||
+                        (long) firstAnswer + answerCount > (this.poolStart - this.answersStart) / Integer.BYTES) {
+                    throw new RuntimeException("The " + this.path + " file is corrupt!");
+                }
+
+                final List<String> answers = new ArrayList<>(answerCount);
+                for (int i = 0; i < answerCount; i++) {
+                    final int answerOffset = this.answersStart + (firstAnswer + i) * Integer.BYTES;
+                    answers.add(this.string(this.buffer.getInt(answerOffset)));
+                }
+                return new Question(title, correctAnswer, answers);
+            } catch (final IndexOutOfBoundsException | IllegalArgumentException | BufferUnderflowException ex) {
+                throw new RuntimeException("The " + this.path + " file is corrupt!", ex);
+            }
+        }
+
+        private String string(final int poolOffset) {
+            // Check the string lies within the pool, before allocating for
+            // it - a corrupt length could be negative, or huge
+            final long offset = (long) this.poolStart + poolOffset;
+            if (poolOffset < 0 || offset + Integer.BYTES > this.buffer.capacity()) {
+                throw new RuntimeException("The " + this.path + " file is corrupt!");
+            }
+            final int length = this.buffer.getInt((int) offset);
+            if (length < 0 || length > this.buffer.capacity() - offset - Integer.BYTES) {
+                throw new RuntimeException("The " + this.path + " file is corrupt!");
+            }
+
+            final byte[] bytes = new byte[length];
+            final ByteBuffer view = this.buffer.duplicate();
+            view.position((int) offset + Integer.BYTES);
+            view.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public int size() {
+            return this.size;
+        }
+
+    }
+
+    private QuestionPack() {
+    }
+
+}
@@ -0,0 +1,69 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.model;
+
+import me.jamiemansfield.csnea.Difficulty;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * A tool for compiling a question definitions file into a question
+ * pack, which can then be given as the subject's definitions file in
+ * subjects.xml.
+ *
+ * <pre>
+ * java -cp fergus.jar me.jamiemansfield.csnea.model.QuestionPackCompiler &lt;questions.xml&gt; [questions.pack]
+ * </pre>
+ *
+ * <em>An existing pack is replaced, so it may be compiled while Fergus'
+ * Quiz is running.</em>
+ */
+public final class QuestionPackCompiler {
+
+    /**
+     * The main method of the compiler.
+     *
+     * @param args The program arguments as provided to the JVM
+     */
+    public static void main(final String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.out.println("Usage: QuestionPackCompiler <questions.xml> [questions.pack]");
+            return;
+        }
+        final Path xml = Paths.get(args[0]);
+        final Path pack = args.length > 1 ? Paths.get(args[1]) :
+                xml.resolveSibling(xml.getFileName().toString().replaceFirst("\\.xml$", "") + QuestionPack.EXTENSION);
+
+        final QuestionDefinitions definitions;
+        try (final InputStream inputStream = Files.newInputStream(xml)) {
+            definitions = QuestionDefinitions.deserialise(inputStream);
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to open the " + xml + " file!", ex);
+        }
+        QuestionPack.write(definitions, pack);
+
+        int questions = 0;
+        for (final Difficulty difficulty : Difficulty.values()) {
+            questions += definitions.get(difficulty).size();
+        }
+        try {
+            System.out.println("Compiled " + questions + " questions from " + xml + " to " + pack + " (" +
+                    Files.size(pack) + " bytes).");
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to read the " + pack + " file!", ex);
+        }
+    }
+
+    private QuestionPackCompiler() {
+    }
+
+}
@@ -0,0 +1,224 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.model;
+
+import me.jamiemansfield.csnea.Difficulty;
+
+import java.io.InputStream;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Draws the questions of a quiz, at random, from a subject's questions.
+ *
+ * <p>Every draw is made from a seed, so the same questions - in the same
+ * order - can be drawn again, given the seed. Seeds are written in
+ * hexadecimal, so they can be given as a command's argument.</p>
+ */
+public final class QuestionSampler {
+
+    private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        // The question definitions have no need for DTDs, or external entities
+        INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    /**
+     * Creates a seed, for a new draw.
+     *
+     * @return The seed
+     */
+    public static long newSeed() {
+        return ThreadLocalRandom.current().nextLong();
+    }
+
+    /**
+     * Writes the given seed, as it is to be given to the student.
+     *
+     * @param seed The seed
+     * @return The seed, in hexadecimal
+     */
+    public static String toString(final long seed) {
+        return Long.toHexString(seed);
+    }
+
+    /**
+     * Reads the given seed, as it was given to the student.
+     *
+     * @param rawSeed The seed, in hexadecimal
+     * @return The seed
+     * @throws NumberFormatException Should the seed be invalid
+     */
+    public static long parseSeed(final String rawSeed) {
+        return Long.parseUnsignedLong(rawSeed, 16);
+    }
+
+    /**
+     * Draws the given number of questions, in a random order, from the
+     * given questions - or all of them, in a random order, should there
+     * not be that many.
+     *
+     * <p>The questions aren't copied, the draw is a view of the given
+     * questions.</p>
+     *
+     * @param questions The questions to draw from
+     * @param count     The number of questions to draw
+     * @param seed      The seed of the draw
+     * @return The questions drawn
+     */
+    public static List<Question> sample(final List<Question> questions, final int count, final long seed) {
+        final SplittableRandom random = new SplittableRandom(seed);
+        final int size = questions.size();
+        final int[] drawn = new int[Math.min(count, size)];
+
+        // A partial Fisher-Yates shuffle of the questions' indices - only
+        // the positions swapped are remembered, so a few questions can be
+        // drawn from many without a permutation of them all
+        final Map<Integer, Integer> swapped = new HashMap<>();
+        for (int i = 0; i < drawn.length; i++) {
+            final int j = i + random.nextInt(size - i);
+            final Integer atI = swapped.get(i);
+            final Integer atJ = swapped.get(j);
+            drawn[i] = atJ == null ? j : atJ;
+            swapped.put(j, atI == null ? i : atI);
+        }
+        return new DrawnQuestions(questions, drawn);
+    }
+
+    /**
+     * Draws the given number of questions of the given difficulty, in a
+     * random order, from the given question definitions XML - reading one
+     * question at a time, so the definitions needn't be held in memory.
+     *
+     * @param xml        The question definitions XML
+     * @param difficulty The difficulty of the questions
+     * @param count      The number of questions to draw
+     * @param seed       The seed of the draw
+     * @return The questions drawn
+     */
+    public static List<Question> sample(final InputStream xml, final Difficulty difficulty, final int count,
+                                        final long seed) {
+        final SplittableRandom random = new SplittableRandom(seed);
+        final Question[] reservoir = new Question[count];
+        int seen = 0;
+
+        try {
+            final XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(xml);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() != XMLStreamConstants.START_ELEMENT ||
+                            !difficulty.getId().equals(reader.getLocalName())) continue;
+
+                    // A reservoir sample - the nth question replaces one
+                    // of those drawn with a probability of count/n, so only
+                    // the questions drawn need be read in full
+                    final int slot = seen < count ? seen : random.nextInt(seen + 1);
+                    seen++;
+                    if (slot < count) {
+                        reservoir[slot] = readQuestion(reader);
+                    }
+                    else {
+                        skipElement(reader);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (final XMLStreamException | NumberFormatException ex) {
+            throw new RuntimeException("Failed to sample the question definitions.", ex);
+        }
+
+        // The reservoir keeps the questions in roughly the order they were
+        // read, so shuffle them
+        final Question[] drawn = Arrays.copyOf(reservoir, Math.min(count, seen));
+        for (int i = drawn.length - 1; i > 0; i--) {
+            final int j = random.nextInt(i + 1);
+            final Question question = drawn[i];
+            drawn[i] = drawn[j];
+            drawn[j] = question;
+        }
+        return Arrays.asList(drawn);
+    }
+
+    private static Question readQuestion(final XMLStreamReader reader) throws XMLStreamException {
+        final String title = reader.getAttributeValue(null, "title");
+        final String rawCorrectAnswer = reader.getAttributeValue(null, "correctAnswer");
+        final List<String> answers = new ArrayList<>();
+
+        int depth = 1;
+        while (depth > 0) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if ("answer".equals(reader.getLocalName())) {
+                    // Reads to the answer's end element
+                    answers.add(reader.getElementText());
+                }
+                else {
+                    depth++;
+                }
+            }
+            else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+        return new Question(title, rawCorrectAnswer == null ? 0 : Integer.parseInt(rawCorrectAnswer.trim()),
+                answers);
+    }
+
+    private static void skipElement(final XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) depth++;
+            else if (event == XMLStreamConstants.END_ELEMENT) depth--;
+        }
+    }
+
+    /**
+     * The questions drawn, a view of the questions drawn from.
+     */
+    private static final class DrawnQuestions extends AbstractList<Question> implements RandomAccess {
+
+        private final List<Question> questions;
+        private final int[] drawn;
+
+        DrawnQuestions(final List<Question> questions, final int[] drawn) {
+            this.questions = questions;
+            this.drawn = drawn;
+        }
+
+        @Override
+        public Question get(final int index) {
+            return this.questions.get(this.drawn[index]);
+        }
+
+        @Override
+        public int size() {
+            return this.drawn.length;
+        }
+
+    }
+
+    private QuestionSampler() {
+    }
+
+}
@@ -7,16 +7,14 @@
 
 package me.jamiemansfield.csnea.model;
 
+import me.jamiemansfield.csnea.security.PasswordHashing;
+import me.jamiemansfield.csnea.security.SaltProvider;
+
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.Base64;
-import java.util.Collections;
 import java.util.List;
-import java.util.Objects;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -77,24 +75,40 @@ public class Student {
         }
     }
 
-    /**
-     * The Java object for interacting with the SHA-256 hash.
-     */
-    private static final MessageDigest SHA_256;
-
     static {
         try {
             JAXB_CONTEXT = JAXBContext.newInstance(StudentSet.class);
         } catch (final JAXBException ex) {
             throw new RuntimeException("Failed to initialise JAXB.", ex);
         }
+    }
 
-        // Get the SHA-256 hash tool from Java
-        try {
-            SHA_256 = MessageDigest.getInstance("sha-256");
-        } catch (final NoSuchAlgorithmException ex) {
-            throw new RuntimeException("Failed to initialise SHA-256.", ex);
-        }
+    /**
+     * The provider of the salts passwords are salted with.
+     */
+    private static final SaltProvider SALTS = new SaltProvider(Integer.getInteger("fergus.salt.buffer", 4096));
+
+    /**
+     * The engine passwords are hashed, and verified, with.
+     */
+    private static final PasswordHashing PASSWORDS = PasswordHashing.selected();
+
+    /**
+     * Gets the engine passwords are hashed, and verified, with.
+     *
+     * @return The password hashing engine
+     */
+    public static PasswordHashing getPasswordHashing() {
+        return PASSWORDS;
+    }
+
+    /**
+     * Gets the provider of the salts passwords are salted with.
+     *
+     * @return The salt provider
+     */
+    public static SaltProvider getSaltProvider() {
+        return SALTS;
     }
 
     /**
@@ -114,8 +128,9 @@ public class Student {
     public static String generateSalt() {
         // So the password can be stored in XML, it is represented in base64
         return Base64.getEncoder().encodeToString(
-                // Generate 20 bytes of securely random bytes
-                new SecureRandom().generateSeed(20)
+                // Take 20 securely random bytes, without waiting on the
+                // system for seed material
+                SALTS.next(20)
         );
     }
 
@@ -124,10 +139,14 @@ public class Student {
     @XmlAttribute private final int     age;
     @XmlAttribute private final String  yearGroup;
     @XmlAttribute private final String  salt;
-    @XmlAttribute private final String  password;
+    @XmlAttribute private volatile String password;
     @XmlAttribute private final boolean admin;
 
-    @XmlElement(name = "attempt") private final List<Attempt> attempts;
+    @XmlElement(name = "attempt") private volatile AttemptLog attempts;
+
+    // The loader of the attempts, for students whose attempts are loaded
+    // on first use - null otherwise
+    private final AttemptLoader attemptLoader;
 
     /**
      * A parameter-less constructor for the use of JAXB.
@@ -143,8 +162,81 @@ public class Student {
         this.yearGroup = null;
         this.salt      = null;
         this.password  = null;
-        this.attempts  = new ArrayList<>();
+        this.attempts  = new AttemptLog();
         this.admin     = false;
+        this.attemptLoader = null;
+    }
+
+    /**
+     * Creates a student from its previously persisted values.
+     *
+     * @param username  The username
+     * @param fullname  The full name
+     * @param age       The age
+     * @param yearGroup The year group
+     * @param salt      The salt, encoded with base64
+     * @param password  The salted and hashed password, encoded with base64
+     * @param admin     Whether the student has the admin flag
+     */
+    public Student(final String username, final String fullname, final int age,
+                   final String yearGroup, final String salt, final String password,
+                   final boolean admin) {
+        this(username, fullname, age, yearGroup, salt, password, admin, new ArrayList<>());
+    }
+
+    /**
+     * Creates a student from its previously persisted values, and
+     * attempts.
+     *
+     * @param username  The username
+     * @param fullname  The full name
+     * @param age       The age
+     * @param yearGroup The year group
+     * @param salt      The salt, encoded with base64
+     * @param password  The salted and hashed password, encoded with base64
+     * @param admin     Whether the student has the admin flag
+     * @param attempts  The quiz attempts the student has made
+     */
+    public Student(final String username, final String fullname, final int age,
+                   final String yearGroup, final String salt, final String password,
+                   final boolean admin, final List<Attempt> attempts) {
+        this.username  = username;
+        this.fullname  = fullname;
+        this.age       = age;
+        this.yearGroup = yearGroup;
+        this.salt      = salt;
+        this.password  = password;
+        this.attempts  = new AttemptLog(attempts);
+        this.admin     = admin;
+        this.attemptLoader = null;
+    }
+
+    /**
+     * Creates a student from its previously persisted values, whose
+     * attempts will be loaded by the given loader when they are first
+     * needed.
+     *
+     * @param username      The username
+     * @param fullname      The full name
+     * @param age           The age
+     * @param yearGroup     The year group
+     * @param salt          The salt, encoded with base64
+     * @param password      The salted and hashed password, encoded with base64
+     * @param admin         Whether the student has the admin flag
+     * @param attemptLoader The loader of the student's attempts
+     */
+    public Student(final String username, final String fullname, final int age,
+                   final String yearGroup, final String salt, final String password,
+                   final boolean admin, final AttemptLoader attemptLoader) {
+        this.username  = username;
+        this.fullname  = fullname;
+        this.age       = age;
+        this.yearGroup = yearGroup;
+        this.salt      = salt;
+        this.password  = password;
+        this.attempts  = null;
+        this.admin     = admin;
+        this.attemptLoader = attemptLoader;
     }
 
     /**
@@ -159,8 +251,19 @@ public class Student {
         this.yearGroup = builder.yearGroup;
         this.salt      = generateSalt();
         this.password  = this.saltAndHashPassword(builder.password);
-        this.attempts  = new ArrayList<>();
+        this.attempts  = new AttemptLog();
         this.admin     = builder.admin;
+        this.attemptLoader = null;
+    }
+
+    /**
+     * Creates a copy of the student, with a copy of its attempts.
+     *
+     * @return The copy
+     */
+    public Student copy() {
+        return new Student(this.username, this.fullname, this.age, this.yearGroup, this.salt, this.password,
+                this.admin, this.getAttempts());
     }
 
     /**
@@ -170,24 +273,54 @@ public class Student {
      * @return The salt and hashed password
      */
     private String saltAndHashPassword(final String password) {
-        // So the password can be stored in XML, it is represented in base64
-        return Base64.getEncoder().encodeToString(
-                // Add the salt, get the bytes, and hash
-                SHA_256.digest((password + this.salt).getBytes())
-        );
+        return PASSWORDS.hash(password, this.salt);
     }
 
     /**
-     * Checks whether the two salted and hashed passwords are equal (the same)
-     * as each other.
+     * Checks whether the provided raw password is the student's password.
      *
      * @param password The raw password
      * @return {@code true} if the passwords match.,
      *         {@code false} otherwise
      */
     public final boolean testPassword(final String password) {
-        // Check if the two salted and hashed passwords are equal.
-        return Objects.equals(this.password, this.saltAndHashPassword(password));
+        // The hash is verified by the scheme that made it
+        return PASSWORDS.verify(password, this.salt, this.password);
+    }
+
+    /**
+     * Establishes whether the student's password was hashed with a
+     * scheme, or cost, other than that now used - and so should be
+     * re-hashed once the password is next known.
+     *
+     * @return {@code true} if the password is outdated,
+     *         {@code false} otherwise
+     */
+    public final boolean isPasswordOutdated() {
+        return PASSWORDS.isOutdated(this.password);
+    }
+
+    /**
+     * Salts and hashes the provided raw password, with the scheme now
+     * used, replacing the student's password.
+     *
+     * <em>This only changes the student, it should be recorded with
+     * {@link me.jamiemansfield.csnea.store.StudentRepository#changePassword(Student, String)}.</em>
+     *
+     * @param password The raw password
+     */
+    public final void changePassword(final String password) {
+        this.password = this.saltAndHashPassword(password);
+    }
+
+    /**
+     * Restores the student's salted and hashed password, as previously
+     * persisted.
+     *
+     * @param password The salted and hashed password
+     */
+    public final void restorePassword(final String password) {
+        this.password = password;
     }
 
     /**
@@ -227,23 +360,76 @@ public class Student {
     }
 
     /**
-     * Gets an immutable view of the quiz attempts the student
-     * has made.
+     * Gets the salt used with the student's password.
+     *
+     * @return The salt, encoded with base64
+     */
+    public final String getSalt() {
+        return this.salt;
+    }
+
+    /**
+     * Gets the student's salted and hashed password.
+     *
+     * @return The salted and hashed password, encoded with base64
+     */
+    public final String getPassword() {
+        return this.password;
+    }
+
+    /**
+     * Gets an immutable snapshot of the quiz attempts the student
+     * has made, loading them should they not have been already.
+     *
+     * <p>The snapshot won't change as further attempts are made, so may
+     * be read while the student is taking a quiz.</p>
      *
      * @return An unmodifiable list of quiz attempts
      */
     public final List<Attempt> getAttempts() {
-        // Return an immutable (not changeable) view of the attempts list
-        return Collections.unmodifiableList(this.attempts);
+        AttemptLog attempts = this.attempts;
+        if (attempts == null) {
+            synchronized (this) {
+                if (this.attempts == null) {
+                    this.attempts = new AttemptLog(this.attemptLoader.load(this));
+                }
+                attempts = this.attempts;
+            }
+        }
+        if (this.attemptLoader != null) this.attemptLoader.accessed(this);
+
+        return attempts.snapshot();
     }
 
     /**
      * Adds an attempt to the student model.
      *
+     * <p>Should the student's attempts not be loaded, the attempt is
+     * expected to be read with the rest of them when they are.</p>
+     *
      * @param attempt The attempt the student made
      */
     public final void addAttempt(final Attempt attempt) {
-        this.attempts.add(attempt);
+        final AttemptLog attempts = this.attempts;
+        if (attempts != null) attempts.append(attempt);
+    }
+
+    /**
+     * Establishes whether the student's attempts are loaded.
+     *
+     * @return {@code true} if the attempts are loaded;
+     *         {@code false} otherwise
+     */
+    public final boolean isAttemptsLoaded() {
+        return this.attempts != null;
+    }
+
+    /**
+     * Unloads the student's attempts, should they have been loaded by an
+     * {@link AttemptLoader} - they will be loaded again when next needed.
+     */
+    public final synchronized void unloadAttempts() {
+        if (this.attemptLoader != null) this.attempts = null;
     }
 
     /**
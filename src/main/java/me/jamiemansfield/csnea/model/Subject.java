@@ -7,8 +7,7 @@
 
 package me.jamiemansfield.csnea.model;
 
-import static me.jamiemansfield.csnea.FergusMain.SUBJECTS_XML;
-
+import me.jamiemansfield.csnea.Difficulty;
 import me.jamiemansfield.csnea.util.StringIdentifiable;
 
 import java.io.IOException;
@@ -18,12 +17,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Optional;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -41,71 +35,6 @@ import javax.xml.bind.annotation.XmlSeeAlso;
 @XmlRootElement
 public class Subject implements StringIdentifiable {
 
-    private static final Map<String, Subject> REGISTRY = new HashMap<>();
-
-    /**
-     * Initialises the subjects registry.
-     */
-    public static void init() {
-        // Clear the registry, in case madness has happened
-        REGISTRY.clear();
-
-        // If the subjects.xml doesn't exist, create an empty subject set.
-        if (Files.notExists(SUBJECTS_XML)) {
-            try (final OutputStream outputStream = Files.newOutputStream(SUBJECTS_XML)) {
-                serialise(Collections.emptyList(), outputStream);
-            } catch (final IOException ex) {
-                throw new RuntimeException("Failed to create the subjects.xml file!", ex);
-            }
-        }
-
-        // Read the subject set from the subjects.xml file
-        final List<Subject> subjects;
-        try (final InputStream inputStream = Files.newInputStream(SUBJECTS_XML)) {
-            subjects = deserialise(inputStream);
-        } catch (final IOException ex) {
-            throw new RuntimeException("Failed to open the students.xml file!", ex);
-        }
-
-        // Test the subjects' question definition file
-        for (final Subject subject : subjects) {
-            if (Files.notExists(subject.getQuestionsDefinitionPath())) {
-                throw new RuntimeException(
-                        "The question definition file for " + subject.id + " does not exist!");
-            }
-
-            // Initialise definitions field
-            try (final InputStream inputStream = Files.newInputStream(subject.getQuestionsDefinitionPath())) {
-                subject.definitions = QuestionDefinitions.deserialise(inputStream);
-            } catch (final IOException ex) {
-                throw new RuntimeException("The question definition file for " + subject.id +
-                        " was invalid!", ex);
-            }
-        }
-
-        // Register subjects
-        subjects.forEach(subject -> REGISTRY.put(subject.id, subject));
-    }
-
-    /**
-     * Gets an immutable-view of all of the registered {@link Subject}s.
-     *
-     * @return The registered subjects
-     */
-    public static Collection<Subject> values() {
-        return Collections.unmodifiableCollection(REGISTRY.values());
-    }
-
-    /**
-     * Gets a {@link Subject} from its string identifier.
-     *
-     * @param rawSubject The subject's string identifier
-     * @return The subject, wrapped in an {@link Optional}
-     */
-    public static Optional<Subject> get(final String rawSubject) {
-        return Optional.ofNullable(REGISTRY.get(rawSubject));
-    }
-
     /**
      * The JAXBContext to use for both serialising and de-serialising.
      */
@@ -162,7 +91,6 @@ public class Subject implements StringIdentifiable {
     @XmlAttribute private final String definitionFile;
 
     private Path questionsDefinitionPath;
-    private QuestionDefinitions definitions;
 
     /**
      * A parameter-less constructor for the use of JAXB.
@@ -220,13 +148,59 @@ public class Subject implements StringIdentifiable {
     }
 
     /**
-     * Gets the question definitions model, used for accessing the subject's
-     * questions.
+     * Checks the subject's question definitions file exists, without
+     * loading it - as it will be loaded when it is first needed.
+     */
+    final void checkDefinitions() {
+        // Test the subject's question definition file
+        if (Files.notExists(this.getQuestionsDefinitionPath())) {
+            throw new RuntimeException(
+                    "The question definition file for " + this.id + " does not exist!");
+        }
+    }
+
+    /**
+     * Loads the subject's question definitions, from its question
+     * definitions file - which may be XML, or a question pack (see
+     * {@link QuestionPackCompiler}) whose questions are read as they
+     * are needed.
      *
      * @return The question definition model
+     * @see SubjectRegistry#getDefinitions(Subject)
+     */
+    final QuestionDefinitions loadDefinitions() {
+        this.checkDefinitions();
+        if (QuestionPack.isPack(this.getQuestionsDefinitionPath())) {
+            return QuestionPack.read(this.getQuestionsDefinitionPath());
+        }
+
+        try (final InputStream inputStream = Files.newInputStream(this.getQuestionsDefinitionPath())) {
+            return QuestionDefinitions.deserialise(inputStream);
+        } catch (final IOException ex) {
+            throw new RuntimeException("The question definition file for " + this.id +
+                    " was invalid!", ex);
+        }
+    }
+
+    /**
+     * Draws questions of the given difficulty from the subject's question
+     * definitions file, as it is read - without loading the definitions.
+     *
+     * @param difficulty The difficulty of the questions
+     * @param count      The number of questions to draw
+     * @param seed       The seed of the draw
+     * @return The questions drawn
+     * @see QuestionSampler#sample(InputStream, Difficulty, int, long)
      */
-    public final QuestionDefinitions getDefinitions() {
-        return this.definitions;
+    final List<Question> streamQuestions(final Difficulty difficulty, final int count, final long seed) {
+        this.checkDefinitions();
+
+        try (final InputStream inputStream = Files.newInputStream(this.getQuestionsDefinitionPath())) {
+            return QuestionSampler.sample(inputStream, difficulty, count, seed);
+        } catch (final IOException ex) {
+            throw new RuntimeException("The question definition file for " + this.id +
+                    " was invalid!", ex);
+        }
     }
 
 }
@@ -0,0 +1,273 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.model;
+
+import me.jamiemansfield.csnea.Difficulty;
+import me.jamiemansfield.csnea.util.concurrent.ParallelLoader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The registry of the {@link Subject}s available, as read from the
+ * subjects.xml file.
+ *
+ * <p>The subjects' question definitions are loaded as they are first
+ * needed, and held in a {@link QuestionBankCache} of no more than
+ * {@code fergus.questions.cached} questions (default: 10000) - unless
+ * {@code fergus.questions.preload} is set, in which case they are all
+ * loaded at startup. Definitions files larger than
+ * {@code fergus.questions.streamedSize} bytes (default: 64MiB) aren't
+ * loaded at all, their questions are drawn as the file is read.</p>
+ */
+public final class SubjectRegistry {
+
+    /**
+     * The most questions to hold in memory at once.
+     */
+    private static final int CACHED_QUESTIONS = Integer.getInteger("fergus.questions.cached", 10_000);
+
+    /**
+     * Whether every subject's question definitions should be loaded at
+     * startup, rather than just checked to exist - so any invalid file
+     * is reported immediately, at the cost of a slower start.
+     */
+    private static final boolean PRELOAD = Boolean.getBoolean("fergus.questions.preload");
+
+    /**
+     * The number of questions drawn for each quiz.
+     */
+    private static final int QUESTIONS_PER_QUIZ = Integer.getInteger("fergus.quiz.questions", 10);
+
+    /**
+     * The size, in bytes, above which a question definitions XML file is
+     * too large to hold in memory - its questions are instead drawn as
+     * the file is read, for each quiz.
+     */
+    private static final long STREAMED_SIZE = Long.getLong("fergus.questions.streamedSize", 64L * 1024 * 1024);
+
+    /**
+     * Loads the subjects registry from the given subjects.xml file,
+     * creating an empty one should it not exist.
+     *
+     * @param subjectsXml The path of the subjects.xml file
+     * @return The registry
+     */
+    public static SubjectRegistry load(final Path subjectsXml) {
+        final ParallelLoader loader = new ParallelLoader(null);
+        final SubjectRegistry registry = load(subjectsXml, loader);
+        loader.await();
+        return registry;
+    }
+
+    /**
+     * Loads the subjects registry from the given subjects.xml file,
+     * creating an empty one should it not exist - checking, or should
+     * {@code fergus.questions.preload} be set loading, the subjects'
+     * question definitions with the given loader.
+     *
+     * <p>The registry isn't ready for use until the loader has been
+     * awaited.</p>
+     *
+     * @param subjectsXml The path of the subjects.xml file
+     * @param loader      The loader of the question definitions
+     * @return The registry
+     */
+    public static SubjectRegistry load(final Path subjectsXml, final ParallelLoader loader) {
+        // If the subjects.xml doesn't exist, create an empty subject set.
+        if (Files.notExists(subjectsXml)) {
+            try (final OutputStream outputStream = Files.newOutputStream(subjectsXml)) {
+                Subject.serialise(Collections.emptyList(), outputStream);
+            } catch (final IOException ex) {
+                throw new RuntimeException("Failed to create the subjects.xml file!", ex);
+            }
+        }
+
+        final List<Subject> subjects = read(subjectsXml);
+        final SubjectRegistry registry = new SubjectRegistry(subjects, new QuestionBankCache(CACHED_QUESTIONS));
+
+        // Check the subjects' question definitions, all at once - unless
+        // preloading, they will be loaded once they are needed
+        for (final Subject subject : subjects) {
+            loader.fork(subject.getQuestionsDefinitionPath().toString(), () -> {
+                if (PRELOAD && !isStreamed(subject)) registry.definitions.preload(subject);
+                else subject.checkDefinitions();
+                return null;
+            });
+        }
+
+        return registry;
+    }
+
+    /**
+     * Reads the subject set from the given subjects.xml file.
+     *
+     * @param subjectsXml The path of the subjects.xml file
+     * @return The subjects
+     */
+    static List<Subject> read(final Path subjectsXml) {
+        try (final InputStream inputStream = Files.newInputStream(subjectsXml)) {
+            return Subject.deserialise(inputStream);
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to open the subjects.xml file!", ex);
+        }
+    }
+
+    // The subjects are never modified, but replaced as a whole - so they
+    // can be read without locking, even while being reloaded
+    private volatile Map<String, Subject> subjects;
+    private final QuestionBankCache definitions;
+
+    /**
+     * Creates a registry of the given subjects.
+     *
+     * @param subjects    The subjects
+     * @param definitions The cache of the subjects' question definitions
+     */
+    public SubjectRegistry(final Collection<Subject> subjects, final QuestionBankCache definitions) {
+        this.subjects = snapshotOf(subjects);
+        this.definitions = definitions;
+    }
+
+    private static Map<String, Subject> snapshotOf(final Collection<Subject> subjects) {
+        final Map<String, Subject> snapshot = new LinkedHashMap<>();
+        subjects.forEach(subject -> snapshot.put(subject.getId(), subject));
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    /**
+     * Replaces the registered subjects with the given subjects, as
+     * subjects.xml has changed - those already taking a quiz keep the
+     * questions they were given.
+     *
+     * <p>Should any of the subjects' question definitions files not
+     * exist, the subjects aren't replaced.</p>
+     *
+     * @param subjects The subjects
+     */
+    void replace(final Collection<Subject> subjects) {
+        subjects.forEach(Subject::checkDefinitions);
+        final Map<String, Subject> replacement = snapshotOf(subjects);
+
+        // Swap the subjects at once, there's only the one reloader
+        final Map<String, Subject> previous = this.subjects;
+        this.subjects = replacement;
+
+        // Forget the definitions of subjects that are gone, or now have
+        // another definitions file
+        previous.values().forEach(subject -> {
+            final Subject current = replacement.get(subject.getId());
+            if (current == null ||
+                    !current.getQuestionsDefinitionPath().equals(subject.getQuestionsDefinitionPath())) {
+                this.definitions.invalidate(subject);
+            }
+        });
+    }
+
+    /**
+     * Loads the question definitions of the given subject again, as its
+     * question definitions file has changed - those already taking a quiz
+     * keep the questions they were given.
+     *
+     * <p>Should the file be invalid, the definitions already loaded are
+     * kept.</p>
+     *
+     * @param subject The subject
+     */
+    void reload(final Subject subject) {
+        if (isStreamed(subject)) {
+            this.definitions.invalidate(subject);
+            subject.checkDefinitions();
+        }
+        else {
+            this.definitions.reload(subject);
+        }
+    }
+
+    /**
+     * Gets an immutable-view of all of the registered {@link Subject}s.
+     *
+     * @return The registered subjects
+     */
+    public Collection<Subject> values() {
+        return this.subjects.values();
+    }
+
+    /**
+     * Gets a {@link Subject} from its string identifier.
+     *
+     * @param rawSubject The subject's string identifier
+     * @return The subject, wrapped in an {@link Optional}
+     */
+    public Optional<Subject> get(final String rawSubject) {
+        return Optional.ofNullable(this.subjects.get(rawSubject));
+    }
+
+    /**
+     * Gets the question definitions model of the given subject, used for
+     * accessing the subject's questions - loading it should it not be
+     * held.
+     *
+     * @param subject The subject
+     * @return The question definition model
+     */
+    public QuestionDefinitions getDefinitions(final Subject subject) {
+        return this.definitions.get(subject);
+    }
+
+    /**
+     * Draws the questions of a quiz, of the given subject and difficulty -
+     * the same questions being drawn, in the same order, for the same
+     * seed (so long as the questions aren't changed).
+     *
+     * @param subject    The subject
+     * @param difficulty The difficulty
+     * @param seed       The seed of the draw
+     * @return The questions drawn
+     * @see QuestionSampler
+     */
+    public List<Question> sample(final Subject subject, final Difficulty difficulty, final long seed) {
+        if (isStreamed(subject)) return subject.streamQuestions(difficulty, QUESTIONS_PER_QUIZ, seed);
+        return QuestionSampler.sample(this.getDefinitions(subject).get(difficulty), QUESTIONS_PER_QUIZ, seed);
+    }
+
+    /**
+     * Establishes whether the given subject's question definitions are
+     * too large to hold in memory, and so drawn from as they are read.
+     */
+    private static boolean isStreamed(final Subject subject) {
+        final Path path = subject.getQuestionsDefinitionPath();
+        if (QuestionPack.isPack(path)) return false;
+        try {
+            return Files.size(path) > STREAMED_SIZE;
+        } catch (final IOException ex) {
+            // Loading the definitions will report the problem
+            return false;
+        }
+    }
+
+    /**
+     * Gets a snapshot of the metrics of the cache of question
+     * definitions.
+     *
+     * @return The metrics
+     */
+    public QuestionBankCache.Stats getCacheStats() {
+        return this.definitions.getStats();
+    }
+
+}
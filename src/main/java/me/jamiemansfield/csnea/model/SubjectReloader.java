@@ -0,0 +1,167 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Watches the subjects.xml file, and the subjects' question definitions
+ * files, reloading whichever changes - so the questions can be changed
+ * without restarting the program.
+ *
+ * <p>Changes are read {@code fergus.subjects.reloadDelay} milliseconds
+ * (default: 200) after they are noticed, as editors often write a file
+ * in several steps. Should a changed file be invalid, it is reported and
+ * what was loaded before is kept.</p>
+ */
+public final class SubjectReloader implements Closeable {
+
+    private static final long DELAY = Long.getLong("fergus.subjects.reloadDelay", 200);
+
+    private final Path subjectsXml;
+    private final SubjectRegistry registry;
+    private final WatchService watcher;
+    private final Set<Path> watched = new HashSet<>();
+    private final Thread thread;
+
+    /**
+     * Starts watching the given subjects.xml file, and the question
+     * definitions files of the given registry's subjects.
+     *
+     * @param subjectsXml The path of the subjects.xml file
+     * @param registry    The registry to reload
+     */
+    public SubjectReloader(final Path subjectsXml, final SubjectRegistry registry) {
+        this.subjectsXml = subjectsXml.toAbsolutePath().normalize();
+        this.registry = registry;
+        try {
+            this.watcher = FileSystems.getDefault().newWatchService();
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to watch the subjects!", ex);
+        }
+        this.watchFiles();
+
+        this.thread = new Thread(this::run, "Fergus Subject Reloader");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Watches the directories of subjects.xml, and every question
+     * definitions file - which may be new, should subjects.xml have
+     * changed.
+     */
+    private void watchFiles() {
+        this.watch(this.subjectsXml.getParent());
+        this.registry.values().forEach(subject -> this.watch(pathOf(subject).getParent()));
+    }
+
+    private void watch(final Path directory) {
+        if (!this.watched.add(directory)) return;
+        try {
+            directory.register(this.watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (final IOException ex) {
+            System.err.println("Failed to watch " + directory + ": " + ex.getMessage());
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                final Set<Path> changed = new HashSet<>();
+                this.collect(this.watcher.take(), changed);
+
+                // Wait for the files to be written, then take any other
+                // changes made meanwhile
+                Thread.sleep(DELAY);
+                WatchKey key;
+                while ((key = this.watcher.poll()) != null) {
+                    this.collect(key, changed);
+                }
+
+                this.reload(changed);
+            }
+        } catch (final InterruptedException | ClosedWatchServiceException ignored) {
+            // The reloader has been closed
+        }
+    }
+
+    private void collect(final WatchKey key, final Set<Path> changed) {
+        final Path directory = (Path) key.watchable();
+        for (final WatchEvent<?> event : key.pollEvents()) {
+            // Should events have been lost, reload everything
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                changed.add(this.subjectsXml);
+                this.registry.values().forEach(subject -> changed.add(pathOf(subject)));
+            }
+            else {
+                changed.add(directory.resolve((Path) event.context()).normalize());
+            }
+        }
+        key.reset();
+    }
+
+    private void reload(final Set<Path> changed) {
+        if (changed.contains(this.subjectsXml)) {
+            try {
+                this.registry.replace(SubjectRegistry.read(this.subjectsXml));
+                System.out.println("Reloaded " + this.subjectsXml.getFileName());
+            } catch (final RuntimeException ex) {
+                System.err.println("Failed to reload " + this.subjectsXml.getFileName() + ", keeping the " +
+                        "subjects already loaded: " + messageOf(ex));
+            }
+            this.watchFiles();
+        }
+
+        for (final Subject subject : this.registry.values()) {
+            if (!changed.contains(pathOf(subject))) continue;
+            try {
+                this.registry.reload(subject);
+                System.out.println("Reloaded the questions of " + subject.getId());
+            } catch (final RuntimeException ex) {
+                System.err.println("Failed to reload the questions of " + subject.getId() + ", keeping the " +
+                        "questions already loaded: " + messageOf(ex));
+            }
+        }
+    }
+
+    private static Path pathOf(final Subject subject) {
+        return subject.getQuestionsDefinitionPath().toAbsolutePath().normalize();
+    }
+
+    private static String messageOf(final Throwable ex) {
+        // Give the root cause too, as that's what needs fixing
+        Throwable cause = ex;
+        while (cause.getCause() != null) cause = cause.getCause();
+        return cause == ex ? ex.getMessage() : ex.getMessage() + " (" + cause + ")";
+    }
+
+    /**
+     * Stops watching the subjects.
+     */
+    @Override
+    public void close() {
+        this.thread.interrupt();
+        try {
+            this.watcher.close();
+        } catch (final IOException ignored) {
+        }
+    }
+
+}
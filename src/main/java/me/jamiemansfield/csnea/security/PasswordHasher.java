@@ -0,0 +1,76 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.security;
+
+/**
+ * A scheme for salting and hashing passwords.
+ *
+ * <p>Hashers are safe for use by many threads at once. Each hasher
+ * recognises the hashes it produced, so the hashes of many schemes can
+ * be stored alongside each other - see {@link PasswordHashing}.</p>
+ */
+public interface PasswordHasher {
+
+    /**
+     * Gets the name of the scheme, for display.
+     *
+     * @return The name
+     */
+    String getName();
+
+    /**
+     * Gets the strength of the scheme, relative to the others - hashes
+     * are only ever re-hashed with a stronger scheme.
+     *
+     * @return The strength, higher being stronger
+     */
+    int getStrength();
+
+    /**
+     * Salts and hashes the given password.
+     *
+     * @param password The raw password
+     * @param salt     The salt, encoded with base64
+     * @return The hash, encoded for storage
+     */
+    String hash(final String password, final String salt);
+
+    /**
+     * Establishes whether the given hash was produced by this scheme.
+     *
+     * @param hash The hash, as stored
+     * @return {@code true} if the hash is of this scheme,
+     *         {@code false} otherwise
+     */
+    boolean recognises(final String hash);
+
+    /**
+     * Checks whether the given password is that of the given hash, in
+     * time independent of where the two differ.
+     *
+     * @param password The raw password
+     * @param salt     The salt, encoded with base64
+     * @param hash     The hash, as stored
+     * @return {@code true} if the password matches,
+     *         {@code false} otherwise
+     */
+    boolean verify(final String password, final String salt, final String hash);
+
+    /**
+     * Establishes whether the given hash, of this scheme, was produced
+     * at a lower cost than the scheme now uses.
+     *
+     * @param hash The hash, as stored
+     * @return {@code true} if the hash should be re-hashed,
+     *         {@code false} otherwise
+     */
+    default boolean isOutdated(final String hash) {
+        return false;
+    }
+
+}
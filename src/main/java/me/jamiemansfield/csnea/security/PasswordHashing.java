@@ -0,0 +1,137 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.security;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The engine passwords are hashed, and verified, with.
+ *
+ * <p>New passwords are hashed with the current {@link PasswordHasher},
+ * while those stored are verified by whichever hasher produced them -
+ * so changing the scheme, or its cost, doesn't lock anybody out. Hashes
+ * of a weaker scheme, or of the same scheme at a lower cost, are reported
+ * as outdated, to be re-hashed once the password is next known - hashes
+ * are never re-hashed with a weaker scheme, should one be selected.</p>
+ *
+ * <em>The scheme used can be chosen with the {@code fergus.password.hasher}
+ * system property.</em>
+ */
+public final class PasswordHashing {
+
+    /**
+     * The character the hashes of every scheme, other than the original
+     * SHA-256, begin with - and separate their parts with.
+     */
+    static final String PREFIX = "$";
+
+    /**
+     * Creates the engine of the scheme selected by the
+     * {@code fergus.password.hasher} system property, defaulting to
+     * PBKDF2 - of the iterations given by the
+     * {@code fergus.password.iterations} system property, or calibrated
+     * to the {@code fergus.password.targetMillis} system property
+     * (default: 50) should it not be set.
+     *
+     * @return The engine
+     */
+    public static PasswordHashing selected() {
+        final String rawHasher = System.getProperty("fergus.password.hasher", "pbkdf2");
+        final PasswordHasher current;
+        switch (rawHasher) {
+            case "pbkdf2":
+                final Integer iterations = Integer.getInteger("fergus.password.iterations");
+                current = iterations != null ?
+                        new Pbkdf2PasswordHasher(iterations) :
+                        Pbkdf2PasswordHasher.calibrate(Long.getLong("fergus.password.targetMillis", 50));
+                break;
+            case "sha-256":
+                current = new Sha256PasswordHasher();
+                break;
+            default:
+                throw new RuntimeException("Unknown password hasher: " + rawHasher);
+        }
+        return new PasswordHashing(current, new Pbkdf2PasswordHasher(0), new Sha256PasswordHasher());
+    }
+
+    private final PasswordHasher current;
+    private final List<PasswordHasher> hashers = new ArrayList<>();
+
+    /**
+     * Creates an engine, hashing with the given hasher.
+     *
+     * @param current The hasher of new hashes
+     * @param others  The hashers of any existing hashes
+     */
+    public PasswordHashing(final PasswordHasher current, final PasswordHasher... others) {
+        this.current = current;
+        this.hashers.add(current);
+        this.hashers.addAll(Arrays.asList(others));
+    }
+
+    /**
+     * Gets the hasher of new hashes.
+     *
+     * @return The hasher
+     */
+    public PasswordHasher getCurrent() {
+        return this.current;
+    }
+
+    /**
+     * Salts and hashes the given password, with the current hasher.
+     *
+     * @param password The raw password
+     * @param salt     The salt, encoded with base64
+     * @return The hash, encoded for storage
+     */
+    public String hash(final String password, final String salt) {
+        return this.current.hash(password, salt);
+    }
+
+    /**
+     * Checks whether the given password is that of the given hash.
+     *
+     * @param password The raw password
+     * @param salt     The salt, encoded with base64
+     * @param hash     The hash, as stored
+     * @return {@code true} if the password matches,
+     *         {@code false} otherwise
+     */
+    public boolean verify(final String password, final String salt, final String hash) {
+        if (hash == null) return false;
+        final PasswordHasher hasher = this.hasherOf(hash);
+        return hasher != null && hasher.verify(password, salt, hash);
+    }
+
+    /**
+     * Establishes whether the given hash should be re-hashed, as it was
+     * made by a weaker scheme than the current hasher's, or by the same
+     * scheme at a lower cost.
+     *
+     * @param hash The hash, as stored
+     * @return {@code true} if the hash is outdated,
+     *         {@code false} otherwise
+     */
+    public boolean isOutdated(final String hash) {
+        final PasswordHasher hasher = this.hasherOf(hash);
+        if (hasher == null) return false;
+        if (this.current.recognises(hash)) return this.current.isOutdated(hash);
+        return hasher.getStrength() < this.current.getStrength();
+    }
+
+    private PasswordHasher hasherOf(final String hash) {
+        for (final PasswordHasher hasher : this.hashers) {
+            if (hasher.recognises(hash)) return hasher;
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,169 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.security;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.InvalidKeySpecException;
+import java.util.Base64;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * A password scheme of PBKDF2, with HMAC-SHA256, whose cost is its
+ * number of iterations.
+ *
+ * <p>Its hashes are stored as {@code $pbkdf2-sha256$<iterations>$<hash>},
+ * so hashes made before the iterations were raised can still be
+ * verified.</p>
+ */
+public final class Pbkdf2PasswordHasher implements PasswordHasher {
+
+    private static final String ID = "pbkdf2-sha256";
+    private static final String HASH_PREFIX = PasswordHashing.PREFIX + ID + PasswordHashing.PREFIX;
+    private static final int KEY_LENGTH = 256;
+
+    /**
+     * The fewest iterations calibration will settle upon.
+     */
+    private static final int MIN_ITERATIONS = 10_000;
+
+    /**
+     * The time spent hashing before calibrating, so the hashing is
+     * compiled before it is measured.
+     */
+    private static final long WARM_UP_NANOS = 250_000_000;
+
+    /**
+     * The key factory of each thread, as a factory isn't promised to be
+     * safe for use by many threads at once.
+     */
+    private static final ThreadLocal<SecretKeyFactory> PBKDF2 = ThreadLocal.withInitial(() -> {
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+        } catch (final NoSuchAlgorithmException ex) {
+            throw new RuntimeException("Failed to initialise PBKDF2.", ex);
+        }
+    });
+
+    /**
+     * Creates a hasher whose iterations are such that verifying a
+     * password takes around (no more than) the given time, on this
+     * machine.
+     *
+     * @param targetMillis The time to verify a password, in milliseconds
+     * @return The hasher
+     */
+    public static Pbkdf2PasswordHasher calibrate(final long targetMillis) {
+        final String salt = Base64.getEncoder().encodeToString(new byte[20]);
+
+        // Warm up, so the time measured isn't that of the interpreter
+        final long warmUpEnd = System.nanoTime() + WARM_UP_NANOS;
+        while (System.nanoTime() < warmUpEnd) {
+            derive("calibration", salt, 1_000);
+        }
+
+        // Take the best of a few runs, as the machine may be busy
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            final long start = System.nanoTime();
+            derive("calibration", salt, MIN_ITERATIONS);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        final long iterations = MIN_ITERATIONS * targetMillis * 1_000_000 / Math.max(best, 1);
+        // Round down to a power of two, so the cost doesn't change with
+        // every start (re-hashing every password as it does)
+        final int rounded = Integer.highestOneBit((int) Math.min(iterations, Integer.MAX_VALUE));
+        return new Pbkdf2PasswordHasher(Math.max(MIN_ITERATIONS, rounded));
+    }
+
+    private final int iterations;
+
+    /**
+     * Creates a hasher, of the given iterations.
+     *
+     * @param iterations The iterations of new hashes
+     */
+    public Pbkdf2PasswordHasher(final int iterations) {
+        this.iterations = iterations;
+    }
+
+    /**
+     * Gets the number of iterations new hashes are made with.
+     *
+     * @return The iterations
+     */
+    public int getIterations() {
+        return this.iterations;
+    }
+
+    @Override
+    public String getName() {
+        return ID + " (" + this.iterations + " iterations)";
+    }
+
+    @Override
+    public int getStrength() {
+        return 1;
+    }
+
+    @Override
+    public String hash(final String password, final String salt) {
+        return HASH_PREFIX + this.iterations + PasswordHashing.PREFIX +
+                Base64.getEncoder().encodeToString(derive(password, salt, this.iterations));
+    }
+
+    @Override
+    public boolean recognises(final String hash) {
+        return hash.startsWith(HASH_PREFIX);
+    }
+
+    @Override
+    public boolean verify(final String password, final String salt, final String hash) {
+        final int iterations = iterationsOf(hash);
+        if (iterations <= 0) return false;
+
+        final byte[] expected;
+        try {
+            expected = Base64.getDecoder().decode(hash.substring(hash.lastIndexOf(PasswordHashing.PREFIX) + 1));
+        } catch (final IllegalArgumentException ex) {
+            return false;
+        }
+        return MessageDigest.isEqual(expected, derive(password, salt, iterations));
+    }
+
+    @Override
+    public boolean isOutdated(final String hash) {
+        return iterationsOf(hash) < this.iterations;
+    }
+
+    private static int iterationsOf(final String hash) {
+        final int end = hash.indexOf(PasswordHashing.PREFIX, HASH_PREFIX.length());
+        if (end < 0) return -1;
+        try {
+            return Integer.parseInt(hash.substring(HASH_PREFIX.length(), end));
+        } catch (final NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    private static byte[] derive(final String password, final String salt, final int iterations) {
+        final PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), Base64.getDecoder().decode(salt),
+                iterations, KEY_LENGTH);
+        try {
+            return PBKDF2.get().generateSecret(spec).getEncoded();
+        } catch (final InvalidKeySpecException ex) {
+            throw new RuntimeException("Failed to hash the password.", ex);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+}
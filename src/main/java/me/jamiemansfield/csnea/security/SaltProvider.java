@@ -0,0 +1,246 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.security;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A provider of salts, served from a buffer of random bytes.
+ *
+ * <p>Asking the system for seed material (as
+ * {@link SecureRandom#generateSeed(int)} does) can block for a long while,
+ * should the system be short of entropy. Instead, a single deterministic
+ * random bit generator is seeded once, and used to fill the buffer.</p>
+ *
+ * <p>There are two buffers - salts are served from one, while the other
+ * is refilled in the background - so signing up doesn't wait upon the
+ * generator, unless the salts are needed faster than it can refill.</p>
+ */
+public final class SaltProvider {
+
+    private final SecureRandom random;
+    private final int bufferSize;
+    private final ExecutorService refiller = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "Fergus Salt Refill");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // The buffer being served from, and the refilled buffer to serve
+    // from next (null while it is being refilled) - guarded by this
+    private byte[] current;
+    private int position;
+    private byte[] standby;
+    private boolean refilling = false;
+
+    // Metrics, guarded by this
+    private long served;
+    private long servedNanos;
+    private long maxNanos;
+    private long refills;
+    private long refillNanos;
+    private long stalls;
+
+    /**
+     * Creates a salt provider, seeding its generator.
+     *
+     * @param bufferSize The number of random bytes in each buffer
+     */
+    public SaltProvider(final int bufferSize) {
+        try {
+            // SHA1PRNG is the hash-based generator available to every
+            // Java 8 runtime
+            this.random = SecureRandom.getInstance("SHA1PRNG");
+        } catch (final NoSuchAlgorithmException ex) {
+            throw new RuntimeException("Failed to initialise SHA1PRNG.", ex);
+        }
+
+        // Seed the generator, once, from the platform's generator - which
+        // doesn't block for seed material, unlike generateSeed
+        final byte[] seed = new byte[32];
+        new SecureRandom().nextBytes(seed);
+        this.random.setSeed(seed);
+
+        this.bufferSize = bufferSize;
+        this.current = this.fill(new byte[bufferSize]);
+        this.standby = this.fill(new byte[bufferSize]);
+    }
+
+    /**
+     * Gets a salt, of the given length.
+     *
+     * @param length The length of the salt, in bytes
+     * @return The salt
+     */
+    public byte[] next(final int length) {
+        final long start = System.nanoTime();
+        final byte[] salt = new byte[length];
+
+        synchronized (this) {
+            int copied = 0;
+            while (copied < length) {
+                if (this.position == this.current.length) this.swap();
+
+                final int count = Math.min(length - copied, this.current.length - this.position);
+                System.arraycopy(this.current, this.position, salt, copied, count);
+                // The bytes are only ever given out once
+                Arrays.fill(this.current, this.position, this.position + count, (byte) 0);
+                this.position += count;
+                copied += count;
+            }
+
+            final long nanos = System.nanoTime() - start;
+            this.served++;
+            this.servedNanos += nanos;
+            this.maxNanos = Math.max(this.maxNanos, nanos);
+        }
+        return salt;
+    }
+
+    private void swap() {
+        if (this.standby == null) {
+            // The salts are being used faster than they can be refilled,
+            // so fill the buffer here
+            this.stalls++;
+            this.fill(this.current);
+        }
+        else {
+            final byte[] used = this.current;
+            this.current = this.standby;
+            this.standby = null;
+            this.refill(used);
+        }
+        this.position = 0;
+    }
+
+    private void refill(final byte[] buffer) {
+        if (this.refilling) return;
+        this.refilling = true;
+        this.refiller.execute(() -> {
+            final long start = System.nanoTime();
+            this.fill(buffer);
+            synchronized (this) {
+                this.refills++;
+                this.refillNanos += System.nanoTime() - start;
+                this.standby = buffer;
+                this.refilling = false;
+            }
+        });
+    }
+
+    private byte[] fill(final byte[] buffer) {
+        this.random.nextBytes(buffer);
+        return buffer;
+    }
+
+    /**
+     * Gets a snapshot of the provider's metrics.
+     *
+     * @return The metrics
+     */
+    public synchronized Stats getStats() {
+        return new Stats(this.bufferSize, this.served, this.served == 0 ? 0 : this.servedNanos / this.served,
+                this.maxNanos, this.refills, this.refills == 0 ? 0 : this.refillNanos / this.refills, this.stalls);
+    }
+
+    /**
+     * A snapshot of the metrics of a {@link SaltProvider}.
+     */
+    public static final class Stats {
+
+        private final int bufferSize;
+        private final long served;
+        private final long meanNanos;
+        private final long maxNanos;
+        private final long refills;
+        private final long meanRefillNanos;
+        private final long stalls;
+
+        Stats(final int bufferSize, final long served, final long meanNanos, final long maxNanos,
+              final long refills, final long meanRefillNanos, final long stalls) {
+            this.bufferSize = bufferSize;
+            this.served = served;
+            this.meanNanos = meanNanos;
+            this.maxNanos = maxNanos;
+            this.refills = refills;
+            this.meanRefillNanos = meanRefillNanos;
+            this.stalls = stalls;
+        }
+
+        /**
+         * Gets the number of random bytes in each buffer.
+         *
+         * @return The buffer size
+         */
+        public int getBufferSize() {
+            return this.bufferSize;
+        }
+
+        /**
+         * Gets the number of salts served.
+         *
+         * @return The number of salts
+         */
+        public long getServed() {
+            return this.served;
+        }
+
+        /**
+         * Gets the mean time taken to serve a salt.
+         *
+         * @return The mean latency, in nanoseconds
+         */
+        public long getMeanNanos() {
+            return this.meanNanos;
+        }
+
+        /**
+         * Gets the longest time taken to serve a salt.
+         *
+         * @return The max latency, in nanoseconds
+         */
+        public long getMaxNanos() {
+            return this.maxNanos;
+        }
+
+        /**
+         * Gets the number of times a buffer has been refilled, in the
+         * background.
+         *
+         * @return The number of refills
+         */
+        public long getRefills() {
+            return this.refills;
+        }
+
+        /**
+         * Gets the mean time taken to refill a buffer.
+         *
+         * @return The mean refill time, in nanoseconds
+         */
+        public long getMeanRefillNanos() {
+            return this.meanRefillNanos;
+        }
+
+        /**
+         * Gets the number of times a salt had to wait for a buffer to be
+         * filled, as the refilled buffer wasn't yet ready.
+         *
+         * @return The number of stalls
+         */
+        public long getStalls() {
+            return this.stalls;
+        }
+
+    }
+
+}
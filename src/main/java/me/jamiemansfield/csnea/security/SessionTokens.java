@@ -0,0 +1,283 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.security;
+
+import me.jamiemansfield.csnea.model.Student;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The session tokens issued to students as they log in, which may be
+ * presented in place of their password - so a student reconnecting
+ * doesn't have their password hashed again.
+ *
+ * <p>Tokens are opaque, made of a selector (used to find the token) and
+ * a verifier (compared, in constant time, with a hash of that issued).
+ * They are held only in memory, for a fixed time after being issued -
+ * and should more than the capacity be issued, the oldest are forgotten
+ * early.</p>
+ *
+ * <p>Each token is bound to the student it was issued to, rather than
+ * their username - as usernames can collide, a token must only ever log
+ * in the student that was issued it.</p>
+ */
+public final class SessionTokens {
+
+    private static final int SELECTOR_LENGTH = 12;
+    private static final int VERIFIER_LENGTH = 24;
+    private static final String SEPARATOR = ".";
+
+    /**
+     * The digest of each thread, as a digest can't be used by many
+     * threads at once.
+     */
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("sha-256");
+        } catch (final NoSuchAlgorithmException ex) {
+            throw new RuntimeException("Failed to initialise SHA-256.", ex);
+        }
+    });
+
+    private final SecureRandom random = new SecureRandom();
+    private final int capacity;
+    private final long ttlNanos;
+    private final Map<String, Token> tokens = new ConcurrentHashMap<>();
+
+    // The selectors of the tokens, in the order they were issued - and
+    // so the order they expire
+    private final Queue<String> issued = new ConcurrentLinkedQueue<>();
+
+    // Metrics
+    private final AtomicLong issuedCount = new AtomicLong();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+
+    /**
+     * Creates an empty set of session tokens.
+     *
+     * @param capacity   The most tokens that may be held at once
+     * @param ttlSeconds The time a token is valid for, after being
+     *                   issued, in seconds
+     */
+    public SessionTokens(final int capacity, final long ttlSeconds) {
+        this.capacity = capacity;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+    }
+
+    /**
+     * Issues a token for the given student.
+     *
+     * @param student The student
+     * @return The token
+     */
+    public String issue(final Student student) {
+        final byte[] selectorBytes = new byte[SELECTOR_LENGTH];
+        final byte[] verifier = new byte[VERIFIER_LENGTH];
+        this.random.nextBytes(selectorBytes);
+        this.random.nextBytes(verifier);
+
+        final String selector = toHex(selectorBytes);
+        this.tokens.put(selector, new Token(student, SHA_256.get().digest(verifier),
+                System.nanoTime() + this.ttlNanos));
+        this.issued.add(selector);
+        this.issuedCount.incrementAndGet();
+
+        this.evict();
+        return selector + SEPARATOR + toHex(verifier);
+    }
+
+    /**
+     * Gets the student the given token was issued to, should it still be
+     * valid.
+     *
+     * @param token The token
+     * @return The student, or {@code null} should the token not be valid
+     */
+    public Student validate(final String token) {
+        final Token issued = this.find(token);
+        if (issued == null) {
+            this.rejected.incrementAndGet();
+            return null;
+        }
+        this.accepted.incrementAndGet();
+        return issued.student;
+    }
+
+    /**
+     * Revokes the given token, should it be valid - as its student has
+     * logged out.
+     *
+     * @param token The token
+     */
+    public void revoke(final String token) {
+        if (this.find(token) != null) {
+            this.tokens.remove(token.substring(0, token.indexOf(SEPARATOR)));
+        }
+    }
+
+    private Token find(final String token) {
+        if (token == null) return null;
+        final int separator = token.indexOf(SEPARATOR);
+        if (separator < 0) return null;
+
+        final Token issued = this.tokens.get(token.substring(0, separator));
+        if (issued == null) return null;
+        if (issued.expiresAt - System.nanoTime() <= 0) {
+            this.tokens.remove(token.substring(0, separator), issued);
+            return null;
+        }
+
+        final byte[] verifier = fromHex(token.substring(separator + 1));
+        if (verifier == null) return null;
+        return MessageDigest.isEqual(issued.verifierHash, SHA_256.get().digest(verifier)) ? issued : null;
+    }
+
+    /**
+     * Forgets the tokens that have expired, and the oldest tokens should
+     * there be more than the capacity.
+     */
+    private void evict() {
+        final long now = System.nanoTime();
+        String selector;
+        while ((selector = this.issued.peek()) != null) {
+            final Token token = this.tokens.get(selector);
+            final boolean expired = token == null || token.expiresAt - now <= 0;
+            if (!expired && this.tokens.size() <= this.capacity) break;
+
+            // Another thread may have taken the selector already
+            if (this.issued.remove(selector) && token != null && this.tokens.remove(selector, token)) {
+                this.evicted.incrementAndGet();
+            }
+        }
+    }
+
+    // Tokens are written in hex, so they can be given as a command's
+    // argument (which can't begin with a hyphen)
+    private static String toHex(final byte[] bytes) {
+        final StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (final byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    private static byte[] fromHex(final String hex) {
+        if (hex.length() % 2 != 0) return null;
+        final byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            final int high = Character.digit(hex.charAt(i * 2), 16);
+            final int low = Character.digit(hex.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0) return null;
+            bytes[i] = (byte) (high << 4 | low);
+        }
+        return bytes;
+    }
+
+    /**
+     * Gets a snapshot of the tokens' metrics.
+     *
+     * @return The metrics
+     */
+    public Stats getStats() {
+        return new Stats(this.tokens.size(), this.issuedCount.get(), this.accepted.get(), this.rejected.get(),
+                this.evicted.get());
+    }
+
+    private static final class Token {
+
+        private final Student student;
+        private final byte[] verifierHash;
+        private final long expiresAt;
+
+        Token(final Student student, final byte[] verifierHash, final long expiresAt) {
+            this.student = student;
+            this.verifierHash = verifierHash;
+            this.expiresAt = expiresAt;
+        }
+
+    }
+
+    /**
+     * A snapshot of the metrics of {@link SessionTokens}.
+     */
+    public static final class Stats {
+
+        private final int active;
+        private final long issued;
+        private final long accepted;
+        private final long rejected;
+        private final long evicted;
+
+        Stats(final int active, final long issued, final long accepted, final long rejected, final long evicted) {
+            this.active = active;
+            this.issued = issued;
+            this.accepted = accepted;
+            this.rejected = rejected;
+            this.evicted = evicted;
+        }
+
+        /**
+         * Gets the number of tokens held.
+         *
+         * @return The number of tokens
+         */
+        public int getActive() {
+            return this.active;
+        }
+
+        /**
+         * Gets the number of tokens issued.
+         *
+         * @return The number of tokens
+         */
+        public long getIssued() {
+            return this.issued;
+        }
+
+        /**
+         * Gets the number of times a valid token has been presented.
+         *
+         * @return The number of tokens
+         */
+        public long getAccepted() {
+            return this.accepted;
+        }
+
+        /**
+         * Gets the number of times an invalid, or expired, token has been
+         * presented.
+         *
+         * @return The number of tokens
+         */
+        public long getRejected() {
+            return this.rejected;
+        }
+
+        /**
+         * Gets the number of tokens forgotten, as they had expired or
+         * the capacity was reached.
+         *
+         * @return The number of tokens
+         */
+        public long getEvicted() {
+            return this.evicted;
+        }
+
+    }
+
+}
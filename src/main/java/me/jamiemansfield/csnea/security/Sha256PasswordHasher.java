@@ -0,0 +1,73 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.security;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * The original password scheme - a single SHA-256 hash of the password
+ * followed by the salt.
+ *
+ * <p>Its hashes are stored as plain base64, without any prefix, as they
+ * always have been.</p>
+ */
+public final class Sha256PasswordHasher implements PasswordHasher {
+
+    /**
+     * The digest of each thread, as a digest can't be used by many
+     * threads at once.
+     */
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("sha-256");
+        } catch (final NoSuchAlgorithmException ex) {
+            throw new RuntimeException("Failed to initialise SHA-256.", ex);
+        }
+    });
+
+    @Override
+    public String getName() {
+        return "sha-256";
+    }
+
+    @Override
+    public int getStrength() {
+        return 0;
+    }
+
+    @Override
+    public String hash(final String password, final String salt) {
+        // So the password can be stored in XML, it is represented in base64
+        return Base64.getEncoder().encodeToString(this.digest(password, salt));
+    }
+
+    @Override
+    public boolean recognises(final String hash) {
+        // The hashes of every other scheme are prefixed
+        return !hash.startsWith(PasswordHashing.PREFIX);
+    }
+
+    @Override
+    public boolean verify(final String password, final String salt, final String hash) {
+        final byte[] expected;
+        try {
+            expected = Base64.getDecoder().decode(hash);
+        } catch (final IllegalArgumentException ex) {
+            return false;
+        }
+        return MessageDigest.isEqual(expected, this.digest(password, salt));
+    }
+
+    private byte[] digest(final String password, final String salt) {
+        // Add the salt, get the bytes, and hash
+        return SHA_256.get().digest((password + salt).getBytes());
+    }
+
+}
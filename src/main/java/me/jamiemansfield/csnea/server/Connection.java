@@ -0,0 +1,211 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.server;
+
+import me.jamiemansfield.csnea.cli.Session;
+import me.jamiemansfield.csnea.model.SubjectRegistry;
+import me.jamiemansfield.csnea.security.SessionTokens;
+import me.jamiemansfield.csnea.store.StudentRepository;
+import me.jamiemansfield.csnea.util.concurrent.MailboxExecutor;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+
+/**
+ * A client's connection to the server, and the {@link Session} it is
+ * running.
+ *
+ * <p>The connection's channel is only ever read from, and written to,
+ * by the selector thread - the session's output is queued, for the
+ * selector thread to write when the channel is ready.</p>
+ *
+ * <p>Neither the input nor the output is let grow without bound - the
+ * channel isn't read from while the session is behind on its input,
+ * and the session waits while more than {@code fergus.server.maxOutput}
+ * bytes (default: 64 KiB) are yet to be written.</p>
+ */
+final class Connection {
+
+    /**
+     * The most bytes of output that may wait to be written, before the
+     * session waits for them to be.
+     */
+    private static final int MAX_OUTPUT = Integer.getInteger("fergus.server.maxOutput", 64 * 1024);
+
+    private final FergusServer server;
+    private final SocketChannel channel;
+    private final SelectionKey key;
+
+    private final ConnectionInput input;
+    private final Session session;
+
+    // The output yet to be written, guarded by itself
+    private final Queue<ByteBuffer> output = new ArrayDeque<>();
+    private int outputBytes = 0;
+    private boolean closing = false;
+
+    // Whether the client has closed its side, and whether reading is
+    // paused - only used by the selector thread
+    private boolean ended = false;
+    private boolean paused = false;
+
+    Connection(final FergusServer server, final SocketChannel channel, final SelectionKey key,
+               final StudentRepository students, final SubjectRegistry subjects,
+               final MailboxExecutor<Object> commandExecutor, final SessionTokens tokens) {
+        this.server = server;
+        this.channel = channel;
+        this.key = key;
+        this.input = new ConnectionInput(() -> server.execute(this::resumeReading));
+        this.session = new Session(this.input, new PrintStream(new Output(), true), students, subjects,
+                commandExecutor, tokens, true);
+    }
+
+    /**
+     * Runs the connection's session, closing the connection once it
+     * has finished.
+     */
+    void run() {
+        try {
+            this.session.run();
+        } finally {
+            this.close();
+        }
+    }
+
+    /**
+     * Reads what is available from the channel, into the session's input.
+     *
+     * <em>Called by the selector thread.</em>
+     *
+     * @param buffer The buffer to read through
+     */
+    void read(final ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        final int read = this.channel.read(buffer);
+        if (read < 0) {
+            // The client has closed its side of the connection
+            this.ended = true;
+            this.key.interestOps(this.key.interestOps() & ~SelectionKey.OP_READ);
+            this.input.end();
+            return;
+        }
+        buffer.flip();
+        if (!this.input.feed(Arrays.copyOf(buffer.array(), buffer.limit()))) {
+            // The session is behind, stop reading until it catches up
+            this.paused = true;
+            this.key.interestOps(this.key.interestOps() & ~SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * Resumes reading from the channel, the session having caught up on
+     * its input.
+     *
+     * <em>Called by the selector thread.</em>
+     */
+    private void resumeReading() {
+        this.paused = false;
+        if (this.key.isValid() && !this.ended) {
+            this.key.interestOps(this.key.interestOps() | SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * Writes as much of the queued output as the channel will accept.
+     *
+     * <em>Called by the selector thread.</em>
+     */
+    void write() throws IOException {
+        synchronized (this.output) {
+            while (!this.output.isEmpty()) {
+                final ByteBuffer buffer = this.output.peek();
+                this.outputBytes -= this.channel.write(buffer);
+                this.output.notifyAll();
+                if (buffer.hasRemaining()) return;
+                this.output.remove();
+            }
+
+            // Everything has been written
+            if (this.closing) {
+                this.abort();
+            }
+            else {
+                this.key.interestOps(this.ended || this.paused ? 0 : SelectionKey.OP_READ);
+            }
+        }
+    }
+
+    /**
+     * Closes the connection, once all of the output has been written.
+     */
+    void close() {
+        synchronized (this.output) {
+            this.closing = true;
+        }
+        this.server.wantsWrite(this.key);
+    }
+
+    /**
+     * Closes the connection immediately, ending the session's input.
+     */
+    void abort() {
+        // Release the session, should it be waiting on its output
+        synchronized (this.output) {
+            this.closing = true;
+            this.output.clear();
+            this.output.notifyAll();
+        }
+        this.input.end();
+        this.key.cancel();
+        try {
+            this.channel.close();
+        } catch (final IOException ignored) {
+        }
+    }
+
+    /**
+     * The output of the session, queued to be written to the channel.
+     */
+    private final class Output extends OutputStream {
+
+        @Override
+        public void write(final int b) throws InterruptedIOException {
+            this.write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws InterruptedIOException {
+            if (len == 0) return;
+            synchronized (output) {
+                // Wait for the client to catch up, should it be behind
+                while (outputBytes >= MAX_OUTPUT && !closing) {
+                    try {
+                        output.wait();
+                    } catch (final InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException();
+                    }
+                }
+                if (closing) return;
+                output.add(ByteBuffer.wrap(Arrays.copyOfRange(b, off, off + len)));
+                outputBytes += len;
+            }
+            server.wantsWrite(key);
+        }
+
+    }
+
+}
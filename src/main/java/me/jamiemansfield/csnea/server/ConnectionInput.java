@@ -0,0 +1,123 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.server;
+
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The input of a connection - the bytes read by the selector thread are
+ * fed in, and read by the thread running the connection's session.
+ *
+ * <p>Should the session fall behind, by more than
+ * {@code fergus.server.maxInput} bytes (default: 64 KiB), the feeding is
+ * paused - and resumed once the session has read half of what was
+ * waiting.</p>
+ */
+final class ConnectionInput extends InputStream {
+
+    /**
+     * Marks the end of the input.
+     */
+    private static final byte[] EOF = new byte[0];
+
+    /**
+     * The most bytes that may wait to be read, before the feeding is
+     * paused.
+     */
+    private static final int MAX_INPUT = Integer.getInteger("fergus.server.maxInput", 64 * 1024);
+
+    private final BlockingQueue<byte[]> chunks = new LinkedBlockingQueue<>();
+    private byte[] chunk;
+    private int position;
+
+    private final Runnable resume;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicBoolean paused = new AtomicBoolean();
+
+    /**
+     * Creates an input.
+     *
+     * @param resume Called, from the session's thread, once the feeding
+     *               should be resumed after having been paused
+     */
+    ConnectionInput(final Runnable resume) {
+        this.resume = resume;
+    }
+
+    /**
+     * Feeds the given bytes into the input.
+     *
+     * @param bytes The bytes
+     * @return {@code true} should more be fed; {@code false} should the
+     *         feeding pause, until resumed
+     */
+    boolean feed(final byte[] bytes) {
+        if (bytes.length == 0) return true;
+        this.chunks.add(bytes);
+        if (this.waiting.addAndGet(bytes.length) < MAX_INPUT) return true;
+
+        this.paused.set(true);
+
+        // The session may have caught up meanwhile, without seeing the
+        // pause - in which case, carry on
+        return this.waiting.get() < MAX_INPUT / 2 && this.paused.compareAndSet(true, false);
+    }
+
+    /**
+     * Marks the end of the input, once everything fed so far has been
+     * read.
+     */
+    void end() {
+        this.chunks.add(EOF);
+    }
+
+    @Override
+    public int read() throws InterruptedIOException {
+        final byte[] b = new byte[1];
+        return this.read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws InterruptedIOException {
+        if (len == 0) return 0;
+
+        if (this.chunk == null || this.position == this.chunk.length) {
+            // The input has ended
+            if (this.chunk == EOF) return -1;
+            try {
+                this.chunk = this.chunks.take();
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            this.position = 0;
+            if (this.chunk == EOF) return -1;
+
+            // Resume the feeding, once enough has been read
+            if (this.waiting.addAndGet(-this.chunk.length) < MAX_INPUT / 2 && this.paused.compareAndSet(true, false)) {
+                this.resume.run();
+            }
+        }
+
+        final int read = Math.min(len, this.chunk.length - this.position);
+        System.arraycopy(this.chunk, this.position, b, off, read);
+        this.position += read;
+        return read;
+    }
+
+    @Override
+    public int available() {
+        return this.chunk == null || this.chunk == EOF ? 0 : this.chunk.length - this.position;
+    }
+
+}
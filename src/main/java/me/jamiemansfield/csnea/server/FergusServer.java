@@ -0,0 +1,236 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.server;
+
+import me.jamiemansfield.csnea.model.SubjectRegistry;
+import me.jamiemansfield.csnea.security.SessionTokens;
+import me.jamiemansfield.csnea.store.StudentRepository;
+import me.jamiemansfield.csnea.util.concurrent.MailboxExecutor;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A server for Fergus' Quiz, allowing many students to use it at once -
+ * each connection having its own session.
+ *
+ * <p>All of the connections are read from, and written to, by a single
+ * thread using a {@link Selector}. Each session runs on its own thread,
+ * as commands wait upon their input part way through (e.g. answering
+ * the questions of a quiz).</p>
+ */
+public final class FergusServer implements Runnable {
+
+    /**
+     * The longest time, in seconds, to wait for the sessions to end once
+     * the server is stopped.
+     */
+    private static final long STOP_TIMEOUT = 5;
+
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(8 * 1024);
+
+    // Changes to be made by the selector thread
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    private final StudentRepository students;
+    private final SubjectRegistry subjects;
+    private final MailboxExecutor<Object> commandExecutor;
+    private final SessionTokens tokens;
+
+    private final ExecutorService sessions = Executors.newCachedThreadPool(new SessionThreadFactory());
+    private volatile boolean running = true;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    /**
+     * Creates a server, listening on the given port.
+     *
+     * @param port     The port
+     * @param students The student store, shared by every session
+     * @param subjects The subject registry, shared by every session
+     * @param commandExecutor The executor of commands, shared by every session
+     * @param tokens   The session tokens, shared by every session
+     */
+    public FergusServer(final int port, final StudentRepository students, final SubjectRegistry subjects,
+                        final MailboxExecutor<Object> commandExecutor, final SessionTokens tokens) {
+        this.students = students;
+        this.subjects = subjects;
+        this.commandExecutor = commandExecutor;
+        this.tokens = tokens;
+        try {
+            this.selector = Selector.open();
+            this.serverChannel = ServerSocketChannel.open();
+            this.serverChannel.bind(new InetSocketAddress(port));
+            this.serverChannel.configureBlocking(false);
+            this.serverChannel.register(this.selector, SelectionKey.OP_ACCEPT);
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to start the server on port " + port + "!", ex);
+        }
+    }
+
+    /**
+     * Runs the server, until it is stopped.
+     */
+    @Override
+    public void run() {
+        System.out.println("Fergus' Quiz is listening on " + this.serverChannel.socket().getLocalSocketAddress());
+
+        try {
+            while (this.running) {
+                this.selector.select();
+
+                // Make any changes requested by the sessions
+                Runnable task;
+                while ((task = this.tasks.poll()) != null) {
+                    task.run();
+                }
+
+                final Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+                    this.handle(key);
+                }
+            }
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to select from the server's connections!", ex);
+        } finally {
+            this.shutdown();
+        }
+    }
+
+    private void handle(final SelectionKey key) {
+        try {
+            if (key.isAcceptable()) {
+                this.accept();
+                return;
+            }
+
+            final Connection connection = (Connection) key.attachment();
+            try {
+                if (key.isReadable()) connection.read(this.readBuffer);
+                if (key.isValid() && key.isWritable()) connection.write();
+            } catch (final IOException ex) {
+                // The client has gone away
+                connection.abort();
+            }
+        } catch (final CancelledKeyException ignored) {
+        }
+    }
+
+    private void accept() {
+        try {
+            final SocketChannel channel = this.serverChannel.accept();
+            if (channel == null) return;
+            channel.configureBlocking(false);
+
+            final SelectionKey key = channel.register(this.selector, SelectionKey.OP_READ);
+            final Connection connection = new Connection(this, channel, key,
+                    this.students, this.subjects, this.commandExecutor, this.tokens);
+            key.attach(connection);
+            this.sessions.execute(connection::run);
+        } catch (final IOException ex) {
+            System.err.println("Failed to accept a connection: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Marks the given connection's key as having output to write.
+     *
+     * <em>This may be called from any thread.</em>
+     *
+     * @param key The key
+     */
+    void wantsWrite(final SelectionKey key) {
+        this.execute(() -> {
+            if (key.isValid()) key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+        });
+    }
+
+    /**
+     * Runs the given task upon the selector thread.
+     *
+     * <em>This may be called from any thread.</em>
+     *
+     * @param task The task
+     */
+    void execute(final Runnable task) {
+        this.tasks.add(task);
+        this.selector.wakeup();
+    }
+
+    /**
+     * Stops the server, closing every connection - and waiting briefly
+     * for their sessions to end.
+     */
+    public void stop() {
+        this.running = false;
+        this.selector.wakeup();
+        try {
+            this.stopped.await(STOP_TIMEOUT, TimeUnit.SECONDS);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void shutdown() {
+        for (final SelectionKey key : this.selector.keys()) {
+            if (key.attachment() instanceof Connection) {
+                ((Connection) key.attachment()).abort();
+            }
+        }
+        this.sessions.shutdownNow();
+        try {
+            this.serverChannel.close();
+            this.selector.close();
+        } catch (final IOException ignored) {
+        }
+
+        // Let the sessions finish the commands they are part way through
+        try {
+            this.sessions.awaitTermination(STOP_TIMEOUT, TimeUnit.SECONDS);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.stopped.countDown();
+        }
+    }
+
+    /**
+     * Creates the daemon threads the sessions are run upon.
+     */
+    private static final class SessionThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "Fergus Session #" + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+}
@@ -0,0 +1,328 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.store;
+
+import me.jamiemansfield.csnea.Difficulty;
+import me.jamiemansfield.csnea.model.Attempt;
+import me.jamiemansfield.csnea.model.Student;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A reader and writer for the compact binary students snapshot.
+ *
+ * <p>The file starts with a header of the {@link #MAGIC} number, the
+ * format {@link #VERSION}, and the number of sections. Each of the
+ * sections - the string table, the students, and the attempts - then
+ * follow, each as its length, its contents, and a CRC32 checksum of
+ * its contents.</p>
+ *
+ * <ul>
+ *     <li>The string table holds every distinct string (usernames,
+ *         subject identifiers, etc) once, each as its length and its
+ *         UTF-8 bytes.</li>
+ *     <li>Each student is a fixed-width record of string table indices,
+ *         its age and admin flag, and the range of its attempts.</li>
+ *     <li>Each attempt is a fixed-width record of its subject's string
+ *         table index, its percentage, and its difficulty.</li>
+ * </ul>
+ */
+final class BinaryStudentCodec {
+
+    /**
+     * The magic number at the start of the file, 'FQSD'.
+     */
+    private static final int MAGIC = 0x46515344;
+
+    /**
+     * The version of the format, this should be incremented whenever
+     * the layout of the file changes.
+     */
+    private static final short VERSION = 1;
+
+    /**
+     * The number of sections within the file.
+     */
+    private static final short SECTIONS = 3;
+
+    /**
+     * The size of a student record, in bytes.
+     */
+    private static final int STUDENT_SIZE = 9 * Integer.BYTES;
+
+    /**
+     * The size of an attempt record, in bytes.
+     */
+    private static final int ATTEMPT_SIZE = Integer.BYTES + Short.BYTES + 2 * Byte.BYTES;
+
+    /**
+     * The string table index used to represent {@code null}.
+     */
+    private static final int NULL = -1;
+
+    /**
+     * Reads the students from the given binary snapshot.
+     *
+     * @param path The path of the snapshot
+     * @return The students
+     */
+    static List<Student> read(final Path path) {
+        // The snapshot is read whole, onto the heap - a mapping would hold
+        // the file open until collected, so it couldn't be replaced (on
+        // Windows) as the snapshot is next written
+        final ByteBuffer buffer;
+        try {
+            buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to open the " + path + " file!", ex);
+        }
+
+        try {
+            // Check the header first
+            if (buffer.getInt() != MAGIC) {
+                throw new RuntimeException("The " + path + " file is not a students snapshot!");
+            }
+            final short version = buffer.getShort();
+            if (version != VERSION) {
+                throw new RuntimeException("The " + path + " file is of an unsupported version (" + version + ")!");
+            }
+            if (buffer.getShort() != SECTIONS) {
+                throw new RuntimeException("The " + path + " file has an unexpected number of sections!");
+            }
+
+            // Read the string table
+            final ByteBuffer stringsSection = section(buffer, path);
+            final String[] strings = new String[count(stringsSection, Integer.BYTES, path)];
+            for (int i = 0; i < strings.length; i++) {
+                final byte[] bytes = new byte[count(stringsSection, Byte.BYTES, path)];
+                stringsSection.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            // Read the students, and attempts
+            final ByteBuffer studentsSection = section(buffer, path);
+            final ByteBuffer attemptsSection = section(buffer, path);
+            final Difficulty[] difficulties = Difficulty.values();
+            final int attemptsStart = attemptsSection.position() + Integer.BYTES;
+
+            final List<Student> students = new ArrayList<>(count(studentsSection, STUDENT_SIZE, path));
+            final int attemptCount = count(attemptsSection, ATTEMPT_SIZE, path);
+            while (studentsSection.hasRemaining()) {
+                final String username  = string(strings, studentsSection.getInt());
+                final String fullname  = string(strings, studentsSection.getInt());
+                final int    age       = studentsSection.getInt();
+                final String yearGroup = string(strings, studentsSection.getInt());
+                final String salt      = string(strings, studentsSection.getInt());
+                final String password  = string(strings, studentsSection.getInt());
+                final boolean admin    = studentsSection.getInt() != 0;
+                final int firstAttempt = studentsSection.getInt();
+                final int attempts     = studentsSection.getInt();
+
+                if (firstAttempt < 0 || attempts < 0 || firstAttempt + attempts > attemptCount) {
+                    throw new RuntimeException("The " + path + " file has an invalid attempt range!");
+                }
+
+                // Attempts are fixed-width, so can be read directly
+                final List<Attempt> studentAttempts = new ArrayList<>(attempts);
+                for (int i = 0; i < attempts; i++) {
+                    final int offset = attemptsStart + (firstAttempt + i) * ATTEMPT_SIZE;
+                    final byte difficulty = attemptsSection.get(offset + Integer.BYTES + Short.BYTES);
+                    studentAttempts.add(new Attempt(
+                            string(strings, attemptsSection.getInt(offset)),
+                            difficulty == NULL ? null : difficulties[difficulty],
+                            attemptsSection.getShort(offset + Integer.BYTES)
+                    ));
+                }
+
+                students.add(new Student(username, fullname, age, yearGroup, salt, password, admin,
+                        studentAttempts));
+            }
+            return students;
+        } catch (final IndexOutOfBoundsException | BufferUnderflowException | IllegalArgumentException ex) {
+            throw new RuntimeException("The " + path + " file is truncated, or corrupt!", ex);
+        }
+    }
+
+    /**
+     * Writes the given students to a binary snapshot.
+     *
+     * @param students The students
+     * @param path     The path of the snapshot
+     */
+    static void write(final List<Student> students, final Path path) {
+        // Build the string table, so each distinct string is only stored once
+        final Map<String, Integer> stringTable = new LinkedHashMap<>();
+        int attemptCount = 0;
+        for (final Student student : students) {
+            intern(stringTable, student.getUsername());
+            intern(stringTable, student.getFullname());
+            intern(stringTable, student.getYearGroup());
+            intern(stringTable, student.getSalt());
+            intern(stringTable, student.getPassword());
+            for (final Attempt attempt : student.getAttempts()) {
+                intern(stringTable, attempt.getSubject());
+                attemptCount++;
+            }
+        }
+
+        // Write the string table
+        final List<byte[]> encoded = new ArrayList<>(stringTable.size());
+        int stringsSize = Integer.BYTES;
+        for (final String string : stringTable.keySet()) {
+            final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            encoded.add(bytes);
+            stringsSize += Integer.BYTES + bytes.length;
+        }
+        final ByteBuffer strings = ByteBuffer.allocate(stringsSize);
+        strings.putInt(encoded.size());
+        for (final byte[] bytes : encoded) {
+            strings.putInt(bytes.length);
+            strings.put(bytes);
+        }
+
+        // Write the students, and attempts
+        final ByteBuffer studentsSection = ByteBuffer.allocate(Integer.BYTES + students.size() * STUDENT_SIZE);
+        final ByteBuffer attemptsSection = ByteBuffer.allocate(Integer.BYTES + attemptCount * ATTEMPT_SIZE);
+        studentsSection.putInt(students.size());
+        attemptsSection.putInt(attemptCount);
+        int firstAttempt = 0;
+        for (final Student student : students) {
+            final List<Attempt> attempts = student.getAttempts();
+
+            studentsSection.putInt(index(stringTable, student.getUsername()));
+            studentsSection.putInt(index(stringTable, student.getFullname()));
+            studentsSection.putInt(student.getAge());
+            studentsSection.putInt(index(stringTable, student.getYearGroup()));
+            studentsSection.putInt(index(stringTable, student.getSalt()));
+            studentsSection.putInt(index(stringTable, student.getPassword()));
+            studentsSection.putInt(student.isAdmin() ? 1 : 0);
+            studentsSection.putInt(firstAttempt);
+            studentsSection.putInt(attempts.size());
+
+            for (final Attempt attempt : attempts) {
+                attemptsSection.putInt(index(stringTable, attempt.getSubject()));
+                attemptsSection.putShort((short) attempt.getPercentage());
+                attemptsSection.put(attempt.getDifficulty() == null ?
+                        NULL : (byte) attempt.getDifficulty().ordinal());
+                attemptsSection.put((byte) 0); // reserved
+            }
+            firstAttempt += attempts.size();
+        }
+
+        final ByteBuffer header = ByteBuffer.allocate(Integer.BYTES + 2 * Short.BYTES);
+        header.putInt(MAGIC);
+        header.putShort(VERSION);
+        header.putShort(SECTIONS);
+        header.flip();
+
+        try (final FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer[] buffers = {
+                    header,
+                    sectionHeader(strings), strings, sectionFooter(strings),
+                    sectionHeader(studentsSection), studentsSection, sectionFooter(studentsSection),
+                    sectionHeader(attemptsSection), attemptsSection, sectionFooter(attemptsSection),
+            };
+            for (final ByteBuffer buffer : buffers) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to update the " + path + " file!", ex);
+        }
+    }
+
+    /**
+     * Reads the next section from the given buffer, verifying its
+     * checksum.
+     *
+     * @param buffer The buffer
+     * @param path   The path of the snapshot, for error messages
+     * @return The contents of the section
+     */
+    private static ByteBuffer section(final ByteBuffer buffer, final Path path) {
+        final int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining() - Integer.BYTES) {
+            throw new RuntimeException("The " + path + " file is truncated, or corrupt!");
+        }
+
+        final ByteBuffer section = buffer.slice();
+        section.limit(length);
+        buffer.position(buffer.position() + length);
+
+        final CRC32 crc = new CRC32();
+        crc.update(section.duplicate());
+        if ((int) crc.getValue() != buffer.getInt()) {
+            throw new RuntimeException("The " + path + " file failed its checksum!");
+        }
+        return section;
+    }
+
+    /**
+     * Reads a count of the items that follow, checking there is room
+     * left in the section for that many.
+     *
+     * @param section The section
+     * @param size    The smallest size of each item, in bytes
+     * @param path    The path of the snapshot
+     * @return The count
+     */
+    private static int count(final ByteBuffer section, final int size, final Path path) {
+        final int count = section.getInt();
+        if (count < 0 || count > section.remaining() / size) {
+            throw new RuntimeException("The " + path + " file is truncated, or corrupt!");
+        }
+        return count;
+    }
+
+    private static ByteBuffer sectionHeader(final ByteBuffer section) {
+        section.flip();
+        final ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+        header.putInt(section.remaining());
+        header.flip();
+        return header;
+    }
+
+    private static ByteBuffer sectionFooter(final ByteBuffer section) {
+        final CRC32 crc = new CRC32();
+        crc.update(section.duplicate());
+        final ByteBuffer footer = ByteBuffer.allocate(Integer.BYTES);
+        footer.putInt((int) crc.getValue());
+        footer.flip();
+        return footer;
+    }
+
+    private static void intern(final Map<String, Integer> stringTable, final String string) {
+        if (string != null) stringTable.putIfAbsent(string, stringTable.size());
+    }
+
+    private static int index(final Map<String, Integer> stringTable, final String string) {
+        return string == null ? NULL : stringTable.get(string);
+    }
+
+    private static String string(final String[] strings, final int index) {
+        return index == NULL ? null : strings[index];
+    }
+
+    private BinaryStudentCodec() {
+    }
+
+}
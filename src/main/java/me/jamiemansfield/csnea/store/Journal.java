@@ -0,0 +1,396 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.store;
+
+import me.jamiemansfield.csnea.Difficulty;
+import me.jamiemansfield.csnea.model.Attempt;
+import me.jamiemansfield.csnea.model.Student;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal of the changes made to the students, since
+ * the last snapshot was written.
+ *
+ * <p>Each record is written as its type, the length of its payload,
+ * the payload itself, and a CRC32 checksum of the payload - so that a
+ * record torn by a crash can be detected, and removed, when the journal
+ * is replayed.</p>
+ *
+ * <p>As usernames can collide, each record names its student by their
+ * username and its occurrence - the number of students of that username
+ * registered before them.</p>
+ *
+ * <p>Records are buffered once appended, and are only written to the
+ * journal file on {@link #flush()} - allowing many records to be
+ * committed with a single write.</p>
+ */
+public final class Journal implements Closeable {
+
+    /**
+     * The record type for {@link Replayer#studentRegistered(Student, int)}.
+     */
+    private static final byte STUDENT_REGISTERED = 1;
+
+    /**
+     * The record type for {@link Replayer#attemptRecorded(String, int, int, Attempt)}.
+     */
+    private static final byte ATTEMPT_RECORDED = 2;
+
+    /**
+     * The record type for {@link Replayer#passwordChanged(String, int, String)}.
+     */
+    private static final byte PASSWORD_CHANGED = 3;
+
+    /**
+     * The size of a record's header - its type, and payload length.
+     */
+    private static final int HEADER_SIZE = Byte.BYTES + Integer.BYTES;
+
+    /**
+     * Whether each flush should be forced to the storage device, rather
+     * than left to the operating system to write.
+     */
+    private static final boolean SYNC = Boolean.getBoolean("fergus.journal.sync");
+
+    private final Path path;
+    private final FileChannel channel;
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private int records = 0;
+    private int pendingRecords = 0;
+
+    /**
+     * Opens the journal at the given path, creating it should it not
+     * exist already.
+     *
+     * @param path The path of the journal
+     */
+    public Journal(final Path path) {
+        this.path = path;
+        try {
+            this.channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to open the " + path + " file!", ex);
+        }
+    }
+
+    /**
+     * Replays all of the intact records in the journal, in the order
+     * they were written, to the given {@link Replayer} - removing any
+     * torn, or corrupt, record from the end of the journal.
+     *
+     * @param replayer The replayer
+     * @return The number of records replayed
+     */
+    public int replay(final Replayer replayer) {
+        final byte[] journal;
+        try {
+            journal = Files.readAllBytes(this.path);
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to read the " + this.path + " file!", ex);
+        }
+
+        final ByteBuffer buffer = ByteBuffer.wrap(journal);
+        int replayed = 0;
+        int offset = 0;
+        while (buffer.remaining() >= HEADER_SIZE) {
+            final byte type = buffer.get();
+            final int length = buffer.getInt();
+
+            // A torn record, from a crash mid-write, marks the end of the journal
+            if (length < 0 || buffer.remaining() < length + Long.BYTES) break;
+            final byte[] payload = new byte[length];
+            buffer.get(payload);
+            if (checksum(payload) != buffer.getLong()) break;
+
+            try (final DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+                switch (type) {
+                    case STUDENT_REGISTERED:
+                        replayer.studentRegistered(new Student(
+                                in.readUTF(),
+                                in.readUTF(),
+                                in.readInt(),
+                                readString(in),
+                                in.readUTF(),
+                                in.readUTF(),
+                                in.readBoolean()
+                        ), in.readInt());
+                        break;
+                    case ATTEMPT_RECORDED:
+                        replayer.attemptRecorded(in.readUTF(), in.readInt(), in.readInt(), new Attempt(
+                                in.readUTF(),
+                                Difficulty.valueOf(in.readUTF()),
+                                in.readInt()
+                        ));
+                        break;
+                    case PASSWORD_CHANGED:
+                        replayer.passwordChanged(in.readUTF(), in.readInt(), in.readUTF());
+                        break;
+                    default:
+                        throw new RuntimeException("Unknown record type " + type + " in the " + this.path + " file!");
+                }
+            } catch (final IOException ex) {
+                throw new RuntimeException("Failed to read a record from the " + this.path + " file!", ex);
+            }
+            replayed++;
+            offset = buffer.position();
+        }
+
+        // Remove the torn record, if any - so the records appended from
+        // now on aren't written after it, and lost on the next replay
+        if (offset < journal.length) {
+            try {
+                this.channel.truncate(offset);
+            } catch (final IOException ex) {
+                throw new RuntimeException("Failed to truncate the " + this.path + " file!", ex);
+            }
+        }
+
+        this.records = replayed;
+        return replayed;
+    }
+
+    /**
+     * Appends a record of the given student having been registered.
+     *
+     * @param student    The student
+     * @param occurrence The number of students of the student's username
+     *                   registered before them
+     */
+    public void studentRegistered(final Student student, final int occurrence) {
+        this.append(STUDENT_REGISTERED, out -> {
+            out.writeUTF(student.getUsername());
+            out.writeUTF(student.getFullname());
+            out.writeInt(student.getAge());
+            writeString(out, student.getYearGroup());
+            out.writeUTF(student.getSalt());
+            out.writeUTF(student.getPassword());
+            out.writeBoolean(student.isAdmin());
+            out.writeInt(occurrence);
+        });
+    }
+
+    /**
+     * Appends a record of the given attempt having been made by the
+     * given student.
+     *
+     * @param student    The student
+     * @param occurrence The number of students of the student's username
+     *                   registered before them
+     * @param index      The position of the attempt, within the student's
+     *                   attempts
+     * @param attempt    The attempt
+     */
+    public void attemptRecorded(final Student student, final int occurrence, final int index,
+                                final Attempt attempt) {
+        this.append(ATTEMPT_RECORDED, out -> {
+            out.writeUTF(student.getUsername());
+            out.writeInt(occurrence);
+            out.writeInt(index);
+            out.writeUTF(attempt.getSubject());
+            out.writeUTF(attempt.getDifficulty().name());
+            out.writeInt(attempt.getPercentage());
+        });
+    }
+
+    /**
+     * Appends a record of the given student's password having been
+     * changed.
+     *
+     * @param username   The username of the student
+     * @param occurrence The number of students of that username
+     *                   registered before the student
+     * @param password   The salted and hashed password
+     */
+    public void passwordChanged(final String username, final int occurrence, final String password) {
+        this.append(PASSWORD_CHANGED, out -> {
+            out.writeUTF(username);
+            out.writeInt(occurrence);
+            out.writeUTF(password);
+        });
+    }
+
+    /**
+     * Gets the number of records within the journal, including those
+     * yet to be flushed.
+     *
+     * @return The number of records
+     */
+    public int getRecords() {
+        return this.records;
+    }
+
+    /**
+     * Empties the journal file, this should only be done once its records
+     * have been folded into a snapshot.
+     *
+     * <em>Records yet to be flushed are kept.</em>
+     */
+    public void truncate() {
+        try {
+            this.channel.truncate(0);
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to truncate the " + this.path + " file!", ex);
+        }
+        this.records = this.pendingRecords;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.flush();
+        this.channel.close();
+    }
+
+    /**
+     * Writes all of the records appended since the last flush to the
+     * journal file, as a single write.
+     *
+     * <em>Should the write fail, the records are kept, so they can be
+     * written by the next flush.</em>
+     */
+    public void flush() {
+        if (this.pending.size() == 0) return;
+
+        final ByteBuffer records = ByteBuffer.wrap(this.pending.toByteArray());
+        long start = -1;
+        try {
+            start = this.channel.size();
+            while (records.hasRemaining()) {
+                this.channel.write(records);
+            }
+            if (SYNC) this.channel.force(false);
+        } catch (final IOException ex) {
+            // Remove any partial write, so the next flush doesn't leave
+            // a torn record in the middle of the journal.
+            if (start >= 0) {
+                try {
+                    this.channel.truncate(start);
+                } catch (final IOException ignored) {
+                }
+            }
+            throw new RuntimeException("Failed to append to the " + this.path + " file!", ex);
+        }
+        this.pending.reset();
+        this.pendingRecords = 0;
+    }
+
+    /**
+     * Appends a single record to the journal, to be written by the
+     * next {@link #flush()}.
+     *
+     * @param type   The record type
+     * @param writer The writer for the record's payload
+     */
+    private void append(final byte type, final PayloadWriter writer) {
+        try {
+            // Write the payload first, so its length is known
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            try (final DataOutputStream out = new DataOutputStream(baos)) {
+                writer.write(out);
+            }
+            final byte[] payload = baos.toByteArray();
+
+            final DataOutputStream record = new DataOutputStream(this.pending);
+            record.writeByte(type);
+            record.writeInt(payload.length);
+            record.write(payload);
+            record.writeLong(checksum(payload));
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to append to the " + this.path + " file!", ex);
+        }
+        this.records++;
+        this.pendingRecords++;
+    }
+
+    private static long checksum(final byte[] payload) {
+        final CRC32 crc = new CRC32();
+        crc.update(payload);
+        return crc.getValue();
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeUTF(value);
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * A writer for the payload of a record.
+     */
+    @FunctionalInterface
+    private interface PayloadWriter {
+
+        void write(final DataOutputStream out) throws IOException;
+
+    }
+
+    /**
+     * The receiver of the records from {@link #replay(Replayer)}.
+     */
+    public interface Replayer {
+
+        /**
+         * Replays the registration of the given student.
+         *
+         * <p>As the journal could be replayed on top of a snapshot that
+         * already contains the student, the replayer should only add the
+         * student if exactly {@code occurrence} students of its username
+         * exist.</p>
+         *
+         * @param student    The student
+         * @param occurrence The number of students of the student's
+         *                   username registered before them
+         */
+        void studentRegistered(final Student student, final int occurrence);
+
+        /**
+         * Replays the given attempt having been made by the student of
+         * the given username, and occurrence.
+         *
+         * <p>As the journal could be replayed on top of a snapshot that
+         * already contains the attempt, the replayer should only add the
+         * attempt if the student has exactly {@code index} attempts.</p>
+         *
+         * @param username   The username of the student
+         * @param occurrence The number of students of that username
+         *                   registered before the student
+         * @param index      The position of the attempt, within the
+         *                   student's attempts
+         * @param attempt    The attempt
+         */
+        void attemptRecorded(final String username, final int occurrence, final int index, final Attempt attempt);
+
+        /**
+         * Replays the password of the student of the given username, and
+         * occurrence, having been changed.
+         *
+         * @param username   The username of the student
+         * @param occurrence The number of students of that username
+         *                   registered before the student
+         * @param password   The salted and hashed password
+         */
+        void passwordChanged(final String username, final int occurrence, final String password);
+
+    }
+
+}
@@ -0,0 +1,639 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.store;
+
+import me.jamiemansfield.csnea.Difficulty;
+import me.jamiemansfield.csnea.model.Attempt;
+import me.jamiemansfield.csnea.model.AttemptLoader;
+import me.jamiemansfield.csnea.model.Student;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * A {@link StudentRepository} backed by a single-file, log-structured
+ * store, keyed by username.
+ *
+ * <p>The store is a header, followed by a log of student, attempt and
+ * password records - each as its type, the length of its payload, the
+ * payload itself, and a CRC32 checksum of the payload. Each attempt record
+ * refers back to the previous attempt of the same student, so a
+ * student's attempts can be found without reading the whole log.</p>
+ *
+ * <p>As usernames can collide, attempt and password records end with
+ * their student's occurrence - the number of students of that username
+ * recorded before them. Records written before then don't have it, and
+ * are of the first student of the username.</p>
+ *
+ * <p>Only the students themselves, and the offsets of their records,
+ * are held in memory - each student's attempts are read from the store
+ * when they are first needed, with only the most recently used students'
+ * attempts being kept.</p>
+ */
+public final class LogStudentRepository implements StudentRepository {
+
+    /**
+     * The magic number at the start of the file, 'FQDB'.
+     */
+    private static final int MAGIC = 0x46514442;
+
+    /**
+     * The version of the store, this should be incremented whenever
+     * the layout of the file changes.
+     */
+    private static final short VERSION = 2;
+
+    /**
+     * The size of the store's header.
+     */
+    private static final int HEADER_SIZE = Integer.BYTES + 2 * Short.BYTES;
+
+    /**
+     * The size of a record's header - its type, and payload length.
+     */
+    private static final int RECORD_HEADER_SIZE = Byte.BYTES + Integer.BYTES;
+
+    private static final byte STUDENT = 1;
+    private static final byte ATTEMPT = 2;
+    private static final byte PASSWORD = 3;
+
+    /**
+     * The offset used to represent there being no record.
+     */
+    private static final long NONE = -1;
+
+    private final Path path;
+    private FileChannel channel;
+    private long end;
+
+    // The entries of every student, in the order they were recorded, and
+    // those of each username
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<String, List<Entry>> index = new HashMap<>();
+    private final StudentIndex students = new StudentIndex();
+
+    // The students whose attempts are loaded, in the order they were last
+    // used
+    private final int residentHistories;
+    private final Map<Entry, Student> resident = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Opens the store at the given path, creating it should it not
+     * exist already - importing the students from the given legacy
+     * repository.
+     *
+     * @param path              The path of the store
+     * @param residentHistories The maximum number of students whose
+     *                          attempts are kept loaded
+     * @param legacy            The repository to import the students
+     *                          from, should the store not exist
+     */
+    public LogStudentRepository(final Path path, final int residentHistories,
+                                final Supplier<StudentRepository> legacy) {
+        this.path = path;
+        this.residentHistories = residentHistories;
+
+        if (!Files.exists(path)) {
+            // Import into another file, then move it in place - so a crash
+            // mid-import can't leave a partial store, to be opened as if
+            // it held every student
+            final Path temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+            this.channel = open(temporaryPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            // Write the header, and import the existing students
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putShort(VERSION);
+            header.putShort((short) 0); // reserved
+            header.flip();
+            this.write(header, 0);
+            this.end = HEADER_SIZE;
+
+            try (final StudentRepository repository = legacy.get()) {
+                for (final Student student : repository.copyStudents()) {
+                    final Entry entry = this.appendStudent(student, null);
+                    for (final Attempt attempt : student.getAttempts()) {
+                        this.appendAttempt(entry, attempt);
+                    }
+                }
+            }
+
+            try {
+                this.channel.force(true);
+                this.channel.close();
+                Files.move(temporaryPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (final IOException ex) {
+                throw new RuntimeException("Failed to write the " + path + " file!", ex);
+            }
+            this.channel = open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        else {
+            this.channel = open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.load();
+        }
+    }
+
+    private static FileChannel open(final Path path, final StandardOpenOption... options) {
+        try {
+            return FileChannel.open(path, options);
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to open the " + path + " file!", ex);
+        }
+    }
+
+    /**
+     * Builds the index from the records within the store, removing any
+     * record torn by a crash mid-write.
+     */
+    private void load() {
+        try (final InputStream is = new BufferedInputStream(Files.newInputStream(this.path));
+             final DataInputStream in = new DataInputStream(is)) {
+            if (in.readInt() != MAGIC) {
+                throw new RuntimeException("The " + this.path + " file is not a students store!");
+            }
+            final short version = in.readShort();
+            if (version < 1 || version > VERSION) {
+                throw new RuntimeException("The " + this.path + " file is of an unsupported version (" + version + ")!");
+            }
+            in.readShort(); // reserved
+
+            // Version 1 stores are valid version 2 stores, without any
+            // password records - mark them as version 2, so an older
+            // reader won't stop at a password record appended to them
+            if (version < VERSION) {
+                final ByteBuffer upgraded = ByteBuffer.allocate(Short.BYTES);
+                upgraded.putShort(VERSION);
+                upgraded.flip();
+                this.write(upgraded, Integer.BYTES);
+            }
+
+            long offset = HEADER_SIZE;
+            while (true) {
+                final byte[] payload;
+                final byte type;
+                try {
+                    type = in.readByte();
+                    final int length = in.readInt();
+                    if (length < 0 || offset + RECORD_HEADER_SIZE + length + Integer.BYTES > this.channel.size()) break;
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    if (checksum(payload) != in.readInt()) break;
+                } catch (final EOFException ex) {
+                    break;
+                }
+
+                final DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                if (type == STUDENT) {
+                    this.readStudent(record, new Entry());
+                }
+                else if (type == ATTEMPT) {
+                    record.readLong(); // previous
+                    final String username = record.readUTF();
+                    final String subject = record.readUTF();
+                    final Difficulty difficulty = Difficulty.values()[record.readByte()];
+                    final int percentage = record.readInt();
+                    final Entry entry = this.entryOf(username, readOccurrence(record));
+                    if (entry != null) {
+                        entry.appended(offset);
+                        this.students.addAttempt(entry.student, subject, difficulty, percentage);
+                    }
+                }
+                else if (type == PASSWORD) {
+                    final String username = record.readUTF();
+                    final String password = record.readUTF();
+                    final Entry entry = this.entryOf(username, readOccurrence(record));
+                    if (entry != null) entry.student.restorePassword(password);
+                }
+                else {
+                    break;
+                }
+                offset += RECORD_HEADER_SIZE + payload.length + Integer.BYTES;
+            }
+
+            // Remove the torn record, if any
+            this.end = offset;
+            this.channel.truncate(offset);
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to read the " + this.path + " file!", ex);
+        }
+    }
+
+    @Override
+    public synchronized Student get(final String username) {
+        // Should usernames collide, the first student keeps it
+        final Entry entry = this.entryOf(username, 0);
+        return entry == null ? null : entry.student;
+    }
+
+    @Override
+    public synchronized boolean contains(final String username) {
+        return this.index.containsKey(username);
+    }
+
+    @Override
+    public synchronized int size() {
+        return this.students.size();
+    }
+
+    @Override
+    public synchronized List<Student> getStudents() {
+        return Collections.unmodifiableList(new ArrayList<>(this.students.getStudents()));
+    }
+
+    @Override
+    public synchronized List<Student> getStudentsInYearGroup(final String yearGroup) {
+        return this.students.getStudentsInYearGroup(yearGroup);
+    }
+
+    @Override
+    public synchronized List<Student> getAdmins() {
+        return this.students.getAdmins();
+    }
+
+    @Override
+    public synchronized List<QuizResult> getResults(final String subject, final Difficulty difficulty) {
+        return this.students.getResults(subject, difficulty);
+    }
+
+    @Override
+    public synchronized QuizAggregate getAggregate(final String subject, final Difficulty difficulty) {
+        return this.students.getAggregate(subject, difficulty);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <em>The attempts are read from the store, without being kept
+     * loaded.</em>
+     */
+    @Override
+    public synchronized List<Student> copyStudents() {
+        final List<Student> students = new ArrayList<>(this.entries.size());
+        for (final Entry entry : this.entries) {
+            final Student student = entry.student;
+            students.add(new Student(student.getUsername(), student.getFullname(), student.getAge(),
+                    student.getYearGroup(), student.getSalt(), student.getPassword(), student.isAdmin(),
+                    entry.load(student)));
+        }
+        return students;
+    }
+
+    @Override
+    public synchronized void register(final Student student) {
+        this.appendStudent(student, student);
+    }
+
+    @Override
+    public void changePassword(final Student student, final String password) {
+        // Hash outside of the lock, as it is deliberately slow
+        student.changePassword(password);
+
+        synchronized (this) {
+            final Entry entry = this.entryOf(student);
+            this.append(PASSWORD, out -> {
+                out.writeUTF(student.getUsername());
+                out.writeUTF(student.getPassword());
+                out.writeInt(entry.occurrence);
+            });
+        }
+    }
+
+    @Override
+    public synchronized void recordAttempt(final Student student, final Attempt attempt) {
+        // Hold the student while appending, so its attempts can't be loaded
+        // between the attempt being appended and added
+        synchronized (student) {
+            this.appendAttempt(this.entryOf(student), attempt);
+            student.addAttempt(attempt);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            this.channel.close();
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to close the " + this.path + " file!", ex);
+        }
+    }
+
+    /**
+     * Appends a student record, for the given student.
+     *
+     * @param student  The student
+     * @param resolved The student object to index, or {@code null} to
+     *                 index a student whose attempts are loaded when
+     *                 needed
+     * @return The entry of the student
+     */
+    private Entry appendStudent(final Student student, final Student resolved) {
+        this.append(STUDENT, out -> {
+            out.writeUTF(student.getUsername());
+            out.writeUTF(student.getFullname());
+            out.writeInt(student.getAge());
+            out.writeBoolean(student.getYearGroup() != null);
+            if (student.getYearGroup() != null) out.writeUTF(student.getYearGroup());
+            out.writeUTF(student.getSalt());
+            out.writeUTF(student.getPassword());
+            out.writeBoolean(student.isAdmin());
+        });
+        final Entry entry = new Entry();
+        entry.student = resolved != null ? resolved :
+                new Student(student.getUsername(), student.getFullname(), student.getAge(),
+                        student.getYearGroup(), student.getSalt(), student.getPassword(), student.isAdmin(), entry);
+        this.add(entry);
+        return entry;
+    }
+
+    /**
+     * Reads the student of a student record into the given entry, and
+     * indexes it.
+     *
+     * @param in    The payload of the student record
+     * @param entry The entry
+     */
+    private void readStudent(final DataInputStream in, final Entry entry) throws IOException {
+        final String username = in.readUTF();
+        final String fullname = in.readUTF();
+        final int age = in.readInt();
+        final String yearGroup = in.readBoolean() ? in.readUTF() : null;
+        entry.student = new Student(username, fullname, age, yearGroup, in.readUTF(), in.readUTF(), in.readBoolean(),
+                entry);
+        this.add(entry);
+    }
+
+    /**
+     * Indexes the student of the given entry, after every other student
+     * of its username.
+     *
+     * @param entry The entry
+     */
+    private void add(final Entry entry) {
+        final List<Entry> namesakes = this.index.computeIfAbsent(entry.student.getUsername(),
+                username -> new ArrayList<>(1));
+        entry.occurrence = namesakes.size();
+        namesakes.add(entry);
+        this.entries.add(entry);
+        this.students.add(entry.student);
+    }
+
+    /**
+     * Gets the entry of the student of the given username, and occurrence
+     * of that username.
+     *
+     * @param username   The username
+     * @param occurrence The number of students of that username recorded
+     *                   before the student
+     * @return The entry, or {@code null} should no such student exist
+     */
+    private Entry entryOf(final String username, final int occurrence) {
+        final List<Entry> namesakes = this.index.get(username);
+        return namesakes == null || occurrence >= namesakes.size() ? null : namesakes.get(occurrence);
+    }
+
+    /**
+     * Gets the entry of the given student.
+     *
+     * @param student The student
+     * @return The entry
+     */
+    private Entry entryOf(final Student student) {
+        final List<Entry> namesakes = this.index.getOrDefault(student.getUsername(), Collections.emptyList());
+        for (final Entry entry : namesakes) {
+            if (entry.student == student) return entry;
+        }
+        throw new IllegalArgumentException("The student " + student.getUsername() + " isn't in the store!");
+    }
+
+    /**
+     * Reads the occurrence at the end of an attempt or password record,
+     * should it have one.
+     *
+     * @param in The rest of the payload of the record
+     * @return The occurrence
+     */
+    private static int readOccurrence(final DataInputStream in) throws IOException {
+        return in.available() >= Integer.BYTES ? in.readInt() : 0;
+    }
+
+    /**
+     * Appends an attempt record, for the student of the given entry.
+     *
+     * @param entry   The entry of the student
+     * @param attempt The attempt
+     */
+    private void appendAttempt(final Entry entry, final Attempt attempt) {
+        synchronized (entry) {
+            entry.appended(this.append(ATTEMPT, out -> {
+                out.writeLong(entry.lastAttempt);
+                out.writeUTF(entry.student.getUsername());
+                out.writeUTF(attempt.getSubject());
+                out.writeByte(attempt.getDifficulty().ordinal());
+                out.writeInt(attempt.getPercentage());
+                out.writeInt(entry.occurrence);
+            }));
+        }
+        this.students.addAttempt(entry.student, attempt);
+    }
+
+    /**
+     * Reads the attempts of a student, walking them backwards from the
+     * latest.
+     *
+     * @param lastAttempt The offset of the latest attempt record
+     * @param count       The number of attempts
+     * @return The attempts
+     */
+    private List<Attempt> readAttempts(final long lastAttempt, final int count) {
+        try {
+            final Attempt[] attempts = new Attempt[count];
+            long offset = lastAttempt;
+            for (int i = count - 1; i >= 0; i--) {
+                final DataInputStream in = this.readRecord(offset);
+                offset = in.readLong();
+                in.readUTF(); // username
+                attempts[i] = new Attempt(in.readUTF(), Difficulty.values()[in.readByte()], in.readInt());
+            }
+            return Arrays.asList(attempts);
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to read attempts from the " + this.path + " file!", ex);
+        }
+    }
+
+    /**
+     * Marks the attempts of the given student as having been used,
+     * unloading those of the least recently used students should there
+     * be too many loaded.
+     *
+     * @param entry   The entry of the student
+     * @param student The student
+     */
+    private void accessed(final Entry entry, final Student student) {
+        final List<Student> evicted = new ArrayList<>();
+        synchronized (this.resident) {
+            this.resident.put(entry, student);
+            final Iterator<Student> it = this.resident.values().iterator();
+            while (this.resident.size() > this.residentHistories && it.hasNext()) {
+                evicted.add(it.next());
+                it.remove();
+            }
+        }
+
+        // Unload outside of the lock, as the student is locked while loading
+        evicted.forEach(Student::unloadAttempts);
+    }
+
+    /**
+     * Reads the payload of the record at the given offset.
+     *
+     * @param offset The offset of the record
+     * @return The payload of the record
+     */
+    private DataInputStream readRecord(final long offset) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        this.read(header, offset);
+        header.flip();
+        header.get(); // type
+        final ByteBuffer payload = ByteBuffer.allocate(header.getInt() + Integer.BYTES);
+        this.read(payload, offset + RECORD_HEADER_SIZE);
+        payload.flip();
+
+        final byte[] bytes = new byte[payload.remaining() - Integer.BYTES];
+        payload.get(bytes);
+        if (checksum(bytes) != payload.getInt()) {
+            throw new IOException("The record at " + offset + " failed its checksum!");
+        }
+        return new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * Appends a record to the end of the store.
+     *
+     * @param type   The record type
+     * @param writer The writer for the record's payload
+     * @return The offset of the record
+     */
+    private long append(final byte type, final PayloadWriter writer) {
+        final byte[] payload;
+        try {
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            try (final DataOutputStream out = new DataOutputStream(baos)) {
+                writer.write(out);
+            }
+            payload = baos.toByteArray();
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to write a record to the " + this.path + " file!", ex);
+        }
+
+        final ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length + Integer.BYTES);
+        record.put(type);
+        record.putInt(payload.length);
+        record.put(payload);
+        record.putInt(checksum(payload));
+        record.flip();
+
+        final long offset = this.end;
+        this.write(record, offset);
+        this.end += record.capacity();
+        return offset;
+    }
+
+    private void write(final ByteBuffer buffer, final long position) {
+        try {
+            long at = position;
+            while (buffer.hasRemaining()) {
+                at += this.channel.write(buffer, at);
+            }
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to write to the " + this.path + " file!", ex);
+        }
+    }
+
+    private void read(final ByteBuffer buffer, final long position) throws IOException {
+        long at = position;
+        while (buffer.hasRemaining()) {
+            final int read = this.channel.read(buffer, at);
+            if (read < 0) throw new EOFException("Unexpected end of the " + this.path + " file!");
+            at += read;
+        }
+    }
+
+    private static int checksum(final byte[] payload) {
+        final CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * The index entry of a student - the student, and the offset of its
+     * latest attempt record.
+     */
+    private final class Entry implements AttemptLoader {
+
+        private Student student;
+        private int occurrence;
+        private long lastAttempt = NONE;
+        private int attempts = 0;
+
+        private synchronized void appended(final long attempt) {
+            this.lastAttempt = attempt;
+            this.attempts++;
+        }
+
+        @Override
+        public List<Attempt> load(final Student student) {
+            final long lastAttempt;
+            final int attempts;
+            synchronized (this) {
+                lastAttempt = this.lastAttempt;
+                attempts = this.attempts;
+            }
+            return readAttempts(lastAttempt, attempts);
+        }
+
+        @Override
+        public void accessed(final Student student) {
+            LogStudentRepository.this.accessed(this, student);
+        }
+
+    }
+
+    /**
+     * A writer for the payload of a record.
+     */
+    @FunctionalInterface
+    private interface PayloadWriter {
+
+        void write(final DataOutputStream out) throws IOException;
+
+    }
+
+}
@@ -0,0 +1,123 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.store;
+
+import me.jamiemansfield.csnea.model.Student;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The aggregate of every attempt made at a quiz - updated as each attempt
+ * is made, so reports needn't visit the attempts themselves.
+ */
+public final class QuizAggregate {
+
+    private int count;
+    private long sum;
+    private int max = -1;
+    private final Set<Student> maxHolders = new LinkedHashSet<>();
+
+    // The number of attempts attaining each percentage, 0-100
+    private final int[] histogram = new int[101];
+
+    /**
+     * Adds an attempt to the aggregate.
+     *
+     * @param student    The student that made the attempt
+     * @param percentage The percentage the student attained
+     */
+    void add(final Student student, final int percentage) {
+        this.count++;
+        this.sum += percentage;
+        this.histogram[Math.max(0, Math.min(100, percentage))]++;
+
+        if (percentage > this.max) {
+            this.max = percentage;
+            this.maxHolders.clear();
+        }
+        if (percentage == this.max) {
+            this.maxHolders.add(student);
+        }
+    }
+
+    /**
+     * Creates a copy of the aggregate, that won't change as more attempts
+     * are made.
+     *
+     * @return The copy
+     */
+    QuizAggregate copy() {
+        final QuizAggregate copy = new QuizAggregate();
+        copy.count = this.count;
+        copy.sum = this.sum;
+        copy.max = this.max;
+        copy.maxHolders.addAll(this.maxHolders);
+        System.arraycopy(this.histogram, 0, copy.histogram, 0, this.histogram.length);
+        return copy;
+    }
+
+    /**
+     * Gets the number of attempts made.
+     *
+     * @return The number of attempts
+     */
+    public int getCount() {
+        return this.count;
+    }
+
+    /**
+     * Gets the sum of the percentages attained.
+     *
+     * @return The sum
+     */
+    public long getSum() {
+        return this.sum;
+    }
+
+    /**
+     * Gets the average percentage attained.
+     *
+     * @return The average, or {@code 0} should no attempts have been made
+     */
+    public double getAverage() {
+        return this.count == 0 ? 0 : (double) this.sum / this.count;
+    }
+
+    /**
+     * Gets the max percentage attained.
+     *
+     * @return The max, or {@code -1} should no attempts have been made
+     */
+    public int getMax() {
+        return this.max;
+    }
+
+    /**
+     * Gets the students that attained the max percentage, in the order
+     * they did so.
+     *
+     * @return The students
+     */
+    public List<Student> getMaxHolders() {
+        return new ArrayList<>(this.maxHolders);
+    }
+
+    /**
+     * Gets the number of attempts attaining each percentage.
+     *
+     * @return The histogram, indexed by percentage
+     */
+    public int[] getHistogram() {
+        return Arrays.copyOf(this.histogram, this.histogram.length);
+    }
+
+}
@@ -0,0 +1,47 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.store;
+
+import me.jamiemansfield.csnea.model.Student;
+
+/**
+ * A posting within the index of attempts by quiz - the student that
+ * made an attempt, and the percentage they attained.
+ *
+ * <p>The index itself holds its postings compactly, these are only made
+ * as its results are read.</p>
+ */
+public final class QuizResult {
+
+    private final Student student;
+    private final int percentage;
+
+    QuizResult(final Student student, final int percentage) {
+        this.student = student;
+        this.percentage = percentage;
+    }
+
+    /**
+     * Gets the student that made the attempt.
+     *
+     * @return The student
+     */
+    public Student getStudent() {
+        return this.student;
+    }
+
+    /**
+     * Gets the percentage the student attained.
+     *
+     * @return The percentage
+     */
+    public int getPercentage() {
+        return this.percentage;
+    }
+
+}
@@ -0,0 +1,88 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.store;
+
+import static me.jamiemansfield.csnea.FergusMain.STUDENTS_JOURNAL;
+
+import me.jamiemansfield.csnea.model.Student;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * A one-shot tool for converting the existing students snapshot (e.g.
+ * the students.xml file) into the given number of shards.
+ *
+ * <pre>
+ * java -Dfergus.format=&lt;format&gt; -cp fergus.jar me.jamiemansfield.csnea.store.ShardMigration &lt;shards&gt;
+ * </pre>
+ *
+ * <em>Fergus' Quiz must not be running while the migration takes
+ * place.</em>
+ */
+public final class ShardMigration {
+
+    /**
+     * The main method of the migration tool.
+     *
+     * @param args The program arguments as provided to the JVM
+     */
+    public static void main(final String[] args) {
+        if (args.length != 1) {
+            System.out.println("Usage: ShardMigration <shards>");
+            return;
+        }
+        final int shards = Integer.parseInt(args[0]);
+        final StudentFormat format = StudentFormat.selected();
+
+        // The journal must be folded into the snapshot first, which
+        // Fergus' Quiz will do as it exits.
+        try {
+            if (Files.exists(STUDENTS_JOURNAL) && Files.size(STUDENTS_JOURNAL) != 0) {
+                System.out.println("The students.journal file is not empty, start and exit Fergus' Quiz first!");
+                return;
+            }
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to read the students.journal file!", ex);
+        }
+
+        final int existing = StudentSnapshot.countExistingShards(format);
+        if (existing == 0) {
+            System.out.println("There is no existing students snapshot to migrate!");
+            return;
+        }
+        if (existing == shards) {
+            System.out.println("The students snapshot already has " + shards + " shards.");
+            return;
+        }
+
+        // Read the existing snapshot, and write it with the new number of shards
+        final StudentSnapshot from = new StudentSnapshot(format, existing);
+        final StudentSnapshot to = new StudentSnapshot(format, shards);
+        final List<Student> students = from.read();
+        to.write(students);
+
+        // Remove the old shards, that are no longer used - an unsharded
+        // snapshot is left as it was, as a backup.
+        try {
+            for (int shard = existing == 1 ? existing : 0; shard < existing; shard++) {
+                if (shards == 1 || shard >= shards) Files.deleteIfExists(from.getPath(shard));
+            }
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to remove the old shards!", ex);
+        }
+
+        System.out.println("Migrated " + students.size() + " students from " + existing + " to " + shards +
+                " shards.");
+    }
+
+    private ShardMigration() {
+    }
+
+}
@@ -0,0 +1,216 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.store;
+
+import static me.jamiemansfield.csnea.FergusMain.STUDENTS_XML;
+
+import me.jamiemansfield.csnea.Difficulty;
+import me.jamiemansfield.csnea.model.Attempt;
+import me.jamiemansfield.csnea.model.Student;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * A {@link StudentRepository} that holds all of the students in memory,
+ * persisting them to a {@link StudentSnapshot} and {@link Journal}.
+ */
+public final class SnapshotStudentRepository implements StudentRepository {
+
+    private final StudentSnapshot snapshot;
+    private final StudentPersister persister;
+    private final StudentIndex students = new StudentIndex();
+
+    /**
+     * Opens the repository from the given snapshot, and journal.
+     *
+     * @param snapshot           The snapshot
+     * @param journalPath        The path of the journal
+     * @param checkpointInterval The number of journal records after which
+     *                           they are folded into the snapshot
+     */
+    public SnapshotStudentRepository(final StudentSnapshot snapshot, final Path journalPath,
+                                     final int checkpointInterval) {
+        this.snapshot = snapshot;
+
+        // Writing the students is done in the background
+        this.persister = new StudentPersister(this.snapshot, journalPath, checkpointInterval,
+                this::copyStudents);
+
+        // If the snapshot doesn't exist, create it - importing the
+        // students.xml file, should it exist and the snapshot be of
+        // another format.
+        if (!this.snapshot.exists()) {
+            this.snapshot.write(Files.exists(STUDENTS_XML) ?
+                    StudentFormat.STAX.read(STUDENTS_XML) :
+                    Collections.emptyList());
+        }
+
+        // Read the student set from the snapshot, and index their attempts
+        for (final Student student : this.snapshot.read()) {
+            this.students.add(student);
+            student.getAttempts().forEach(attempt -> this.students.addAttempt(student, attempt));
+        }
+
+        // Replay the changes made since the snapshot was written
+        final int replayed = this.persister.replay(new Journal.Replayer() {
+            @Override
+            public void studentRegistered(final Student student, final int occurrence) {
+                // Usernames can collide, so the student is only known to
+                // be in the snapshot should there be one more of them
+                if (students.count(student.getUsername()) == occurrence) {
+                    students.add(student);
+                    snapshot.markDirty(student.getUsername());
+                }
+            }
+
+            @Override
+            public void attemptRecorded(final String username, final int occurrence, final int index,
+                                        final Attempt attempt) {
+                final Student student = students.get(username, occurrence);
+                if (student != null && student.getAttempts().size() == index) {
+                    student.addAttempt(attempt);
+                    students.addAttempt(student, attempt);
+                    snapshot.markDirty(username);
+                }
+            }
+
+            @Override
+            public void passwordChanged(final String username, final int occurrence, final String password) {
+                final Student student = students.get(username, occurrence);
+                if (student != null) {
+                    student.restorePassword(password);
+                    snapshot.markDirty(username);
+                }
+            }
+        });
+
+        // Fold the replayed changes into the snapshot
+        if (replayed > 0) this.persister.checkpoint();
+
+        this.persister.start();
+    }
+
+    @Override
+    public Student get(final String username) {
+        synchronized (this.students) {
+            return this.students.get(username);
+        }
+    }
+
+    @Override
+    public boolean contains(final String username) {
+        synchronized (this.students) {
+            return this.students.contains(username);
+        }
+    }
+
+    @Override
+    public int size() {
+        synchronized (this.students) {
+            return this.students.size();
+        }
+    }
+
+    @Override
+    public List<Student> getStudents() {
+        synchronized (this.students) {
+            return Collections.unmodifiableList(new ArrayList<>(this.students.getStudents()));
+        }
+    }
+
+    @Override
+    public List<Student> getStudentsInYearGroup(final String yearGroup) {
+        synchronized (this.students) {
+            return this.students.getStudentsInYearGroup(yearGroup);
+        }
+    }
+
+    @Override
+    public List<Student> getAdmins() {
+        synchronized (this.students) {
+            return this.students.getAdmins();
+        }
+    }
+
+    @Override
+    public List<QuizResult> getResults(final String subject, final Difficulty difficulty) {
+        synchronized (this.students) {
+            return this.students.getResults(subject, difficulty);
+        }
+    }
+
+    @Override
+    public QuizAggregate getAggregate(final String subject, final Difficulty difficulty) {
+        synchronized (this.students) {
+            return this.students.getAggregate(subject, difficulty);
+        }
+    }
+
+    @Override
+    public List<Student> copyStudents() {
+        return this.copyStudents(student -> true);
+    }
+
+    /**
+     * Creates a copy of the students matching the given filter, and their
+     * attempts, that is safe for the persister to write while students
+     * continue to be registered and make attempts.
+     *
+     * @param filter The filter
+     * @return A copy of the students
+     */
+    private List<Student> copyStudents(final Predicate<Student> filter) {
+        synchronized (this.students) {
+            final List<Student> copy = new ArrayList<>();
+            for (final Student student : this.students.getStudents()) {
+                if (filter.test(student)) copy.add(student.copy());
+            }
+            return copy;
+        }
+    }
+
+    @Override
+    public void register(final Student student) {
+        synchronized (this.students) {
+            final int occurrence = this.students.count(student.getUsername());
+            this.students.add(student);
+            this.persister.studentRegistered(student, occurrence);
+        }
+    }
+
+    @Override
+    public void changePassword(final Student student, final String password) {
+        // Hash outside of the lock, as it is deliberately slow
+        student.changePassword(password);
+
+        synchronized (this.students) {
+            this.persister.passwordChanged(student, this.students.occurrenceOf(student));
+        }
+    }
+
+    @Override
+    public void recordAttempt(final Student student, final Attempt attempt) {
+        synchronized (this.students) {
+            final int index = student.getAttempts().size();
+            student.addAttempt(attempt);
+            this.students.addAttempt(student, attempt);
+            this.persister.attemptRecorded(student, this.students.occurrenceOf(student), index, attempt);
+        }
+    }
+
+    @Override
+    public void close() {
+        this.persister.close();
+    }
+
+}
@@ -0,0 +1,183 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.store;
+
+import me.jamiemansfield.csnea.Difficulty;
+import me.jamiemansfield.csnea.model.Attempt;
+import me.jamiemansfield.csnea.model.Student;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * A streaming reader and writer for the students.xml file, that reads
+ * and writes the same schema as JAXB does for
+ * {@link Student#serialise(List, OutputStream)} - one element at a time,
+ * rather than building the whole document in memory.
+ */
+final class StaxStudentCodec {
+
+    private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+    static {
+        // The students.xml file has no need for DTDs, or external entities
+        INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    /**
+     * De-serialises the XML from the given input stream.
+     *
+     * @param is The given input stream
+     * @return A list of students
+     */
+    static List<Student> read(final InputStream is) {
+        final List<Student> students = new ArrayList<>();
+        try {
+            final XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(is);
+            try {
+                // The attributes of the student currently being read
+                String username = null, fullname = null, yearGroup = null, salt = null, password = null;
+                int age = 0;
+                boolean admin = false;
+                final List<Attempt> attempts = new ArrayList<>();
+
+                while (reader.hasNext()) {
+                    switch (reader.next()) {
+                        case XMLStreamConstants.START_ELEMENT:
+                            if ("student".equals(reader.getLocalName())) {
+                                username  = reader.getAttributeValue(null, "username");
+                                fullname  = reader.getAttributeValue(null, "fullname");
+                                age       = parseInt(reader.getAttributeValue(null, "age"));
+                                yearGroup = reader.getAttributeValue(null, "yearGroup");
+                                salt      = reader.getAttributeValue(null, "salt");
+                                password  = reader.getAttributeValue(null, "password");
+                                admin     = parseBoolean(reader.getAttributeValue(null, "admin"));
+                                attempts.clear();
+                            }
+                            else if ("attempt".equals(reader.getLocalName())) {
+                                final String difficulty = reader.getAttributeValue(null, "difficulty");
+                                attempts.add(new Attempt(
+                                        reader.getAttributeValue(null, "subject"),
+                                        difficulty == null ? null : Difficulty.valueOf(difficulty),
+                                        parseInt(reader.getAttributeValue(null, "percentage"))
+                                ));
+                            }
+                            break;
+                        case XMLStreamConstants.END_ELEMENT:
+                            if ("student".equals(reader.getLocalName())) {
+                                students.add(new Student(username, fullname, age, yearGroup, salt, password,
+                                        admin, attempts));
+                            }
+                            break;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (final XMLStreamException | IllegalArgumentException ex) {
+            throw new RuntimeException("Failed to de-serialise students.", ex);
+        }
+        return students;
+    }
+
+    /**
+     * Serialises the given students to formatted XML.
+     *
+     * @param students The students to serialise
+     * @param os       The stream to output the XML to
+     */
+    static void write(final Collection<Student> students, final OutputStream os) {
+        try {
+            final XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(os, "UTF-8");
+            writer.writeStartDocument("UTF-8", "1.0");
+            writer.writeCharacters("\n");
+
+            if (students.isEmpty()) {
+                writer.writeEmptyElement("students");
+            }
+            else {
+                writer.writeStartElement("students");
+                for (final Student student : students) {
+                    final List<Attempt> attempts = student.getAttempts();
+
+                    // Keep the indentation, etc, that JAXB produces
+                    writer.writeCharacters("\n    ");
+                    if (attempts.isEmpty()) {
+                        writer.writeEmptyElement("student");
+                    }
+                    else {
+                        writer.writeStartElement("student");
+                    }
+                    writeAttribute(writer, "username", student.getUsername());
+                    writeAttribute(writer, "fullname", student.getFullname());
+                    writeAttribute(writer, "age", Integer.toString(student.getAge()));
+                    writeAttribute(writer, "yearGroup", student.getYearGroup());
+                    writeAttribute(writer, "salt", student.getSalt());
+                    writeAttribute(writer, "password", student.getPassword());
+                    writeAttribute(writer, "admin", Boolean.toString(student.isAdmin()));
+
+                    if (!attempts.isEmpty()) {
+                        for (final Attempt attempt : attempts) {
+                            writer.writeCharacters("\n        ");
+                            writer.writeEmptyElement("attempt");
+                            writeAttribute(writer, "subject", attempt.getSubject());
+                            writeAttribute(writer, "difficulty",
+                                    attempt.getDifficulty() == null ? null : attempt.getDifficulty().name());
+                            writeAttribute(writer, "percentage", Integer.toString(attempt.getPercentage()));
+                        }
+                        writer.writeCharacters("\n    ");
+                        writer.writeEndElement();
+                    }
+                }
+                writer.writeCharacters("\n");
+                writer.writeEndElement();
+            }
+
+            writer.writeCharacters("\n");
+            writer.writeEndDocument();
+            writer.flush();
+            writer.close();
+        } catch (final XMLStreamException ex) {
+            throw new RuntimeException("Failed to serialise students.", ex);
+        }
+    }
+
+    /**
+     * Writes the given attribute, should it have a value - JAXB omits
+     * attributes that have a null value.
+     */
+    private static void writeAttribute(final XMLStreamWriter writer, final String name, final String value)
+            throws XMLStreamException {
+        if (value != null) writer.writeAttribute(name, value);
+    }
+
+    private static int parseInt(final String value) {
+        return value == null ? 0 : Integer.parseInt(value.trim());
+    }
+
+    private static boolean parseBoolean(final String value) {
+        // xs:boolean allows both 'true' and '1'
+        return value != null && ("true".equals(value.trim()) || "1".equals(value.trim()));
+    }
+
+    private StaxStudentCodec() {
+    }
+
+}
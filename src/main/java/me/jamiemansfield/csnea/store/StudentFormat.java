@@ -0,0 +1,174 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.store;
+
+import static me.jamiemansfield.csnea.FergusMain.STUDENTS_DAT;
+import static me.jamiemansfield.csnea.FergusMain.STUDENTS_XML;
+
+import me.jamiemansfield.csnea.model.Student;
+import me.jamiemansfield.csnea.util.Identifiable;
+import me.jamiemansfield.csnea.util.StringIdentifiable;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * An enumeration of the available formats for reading, and writing,
+ * the students snapshot.
+ *
+ * <em>The format used can be chosen with the {@code fergus.format}
+ * system property.</em>
+ */
+public enum StudentFormat implements StringIdentifiable {
+
+    /**
+     * The original format, reading and writing the students.xml file
+     * through JAXB.
+     */
+    JAXB("jaxb", STUDENTS_XML) {
+        @Override
+        public List<Student> read(final Path path) {
+            try (final InputStream inputStream = Files.newInputStream(path)) {
+                return Student.deserialise(inputStream);
+            } catch (final IOException ex) {
+                throw new RuntimeException("Failed to open the " + path + " file!", ex);
+            }
+        }
+
+        @Override
+        public void write(final List<Student> students, final Path path) {
+            try (final OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(path))) {
+                Student.serialise(students, outputStream);
+            } catch (final IOException ex) {
+                throw new RuntimeException("Failed to update the " + path + " file!", ex);
+            }
+        }
+    },
+
+    /**
+     * Reads and writes the same students.xml file as {@link #JAXB}, but
+     * streams the students through StAX.
+     */
+    STAX("stax", STUDENTS_XML) {
+        @Override
+        public List<Student> read(final Path path) {
+            try (final InputStream inputStream = Files.newInputStream(path)) {
+                return StaxStudentCodec.read(inputStream);
+            } catch (final IOException ex) {
+                throw new RuntimeException("Failed to open the " + path + " file!", ex);
+            }
+        }
+
+        @Override
+        public void write(final List<Student> students, final Path path) {
+            try (final OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(path))) {
+                StaxStudentCodec.write(students, outputStream);
+            } catch (final IOException ex) {
+                throw new RuntimeException("Failed to update the " + path + " file!", ex);
+            }
+        }
+    },
+
+    /**
+     * A compact binary format, written to the students.dat file, and
+     * read whole, onto the heap.
+     *
+     * <em>The students.xml file is imported from, should the students.dat
+     * file not exist yet.</em>
+     */
+    BINARY("binary", STUDENTS_DAT) {
+        @Override
+        public List<Student> read(final Path path) {
+            return BinaryStudentCodec.read(path);
+        }
+
+        @Override
+        public void write(final List<Student> students, final Path path) {
+            BinaryStudentCodec.write(students, path);
+        }
+    },
+    ;
+
+    /**
+     * Gets the format selected by the {@code fergus.format} system
+     * property, defaulting to {@link #JAXB}.
+     *
+     * @return The selected format
+     */
+    public static StudentFormat selected() {
+        final String rawFormat = System.getProperty("fergus.format", JAXB.id);
+        return get(rawFormat).orElseThrow(() -> new RuntimeException("Unknown student format: " + rawFormat));
+    }
+
+    /**
+     * Gets the {@link StudentFormat} of the provided string identifier.
+     *
+     * @param rawFormat The string identifier of the format
+     * @return The format, wrapped in an {@link Optional}
+     */
+    public static Optional<StudentFormat> get(final String rawFormat) {
+        return Identifiable.getById(values(), rawFormat);
+    }
+
+    private final String id;
+    private final Path path;
+
+    /**
+     * Creates a student format from its identifier, and the path of
+     * its snapshot.
+     *
+     * @param id   The identifier of the format
+     * @param path The path the snapshot will be found
+     */
+    StudentFormat(final String id, final Path path) {
+        this.id = id;
+        this.path = path;
+    }
+
+    /**
+     * Gets the identifier that is used to represent this format.
+     *
+     * @return The format's identifier
+     */
+    @Override
+    public final String getId() {
+        return this.id;
+    }
+
+    /**
+     * Gets the path that the format's snapshot will be found.
+     *
+     * @return The path of the snapshot
+     */
+    public final Path getPath() {
+        return this.path;
+    }
+
+    /**
+     * Reads the students from the given file.
+     *
+     * @param path The file to read from
+     * @return The students
+     */
+    public abstract List<Student> read(final Path path);
+
+    /**
+     * Writes the given students to the given file.
+     *
+     * @param students The students to write
+     * @param path     The file to write to
+     */
+    public abstract void write(final List<Student> students, final Path path);
+
+}
@@ -0,0 +1,246 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.store;
+
+import me.jamiemansfield.csnea.Difficulty;
+import me.jamiemansfield.csnea.model.Attempt;
+import me.jamiemansfield.csnea.model.Student;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The in-memory indexes of the students - by username, year group and
+ * admin flag - kept alongside the students in the order they were
+ * registered, and an index of their attempts by quiz - along with the
+ * aggregate of each quiz.
+ *
+ * <p>The postings of each quiz are held as a pair of arrays, of the
+ * students and their percentages, rather than an object for each
+ * attempt - as there is a posting for every attempt ever made.</p>
+ *
+ * <em>This isn't thread-safe, the repositories using it synchronise
+ * upon it.</em>
+ */
+final class StudentIndex {
+
+    private final List<Student> students = new ArrayList<>();
+    // The students of each username, in the order they were added - as
+    // usernames can collide
+    private final Map<String, List<Student>> byUsername = new HashMap<>();
+    private final Map<String, List<Student>> byYearGroup = new HashMap<>();
+    private final List<Student> admins = new ArrayList<>();
+    private final Map<String, Map<Difficulty, Quiz>> byQuiz = new HashMap<>();
+
+    /**
+     * Adds the given student to the indexes.
+     *
+     * @param student The student
+     */
+    void add(final Student student) {
+        this.students.add(student);
+        this.byUsername.computeIfAbsent(student.getUsername(), username -> new ArrayList<>(1)).add(student);
+        this.byYearGroup.computeIfAbsent(student.getYearGroup(), yearGroup -> new ArrayList<>()).add(student);
+        if (student.isAdmin()) this.admins.add(student);
+    }
+
+    /**
+     * Adds the given attempt, made by the given student, to the index of
+     * attempts by quiz.
+     *
+     * @param student The student
+     * @param attempt The attempt
+     */
+    void addAttempt(final Student student, final Attempt attempt) {
+        this.addAttempt(student, attempt.getSubject(), attempt.getDifficulty(), attempt.getPercentage());
+    }
+
+    /**
+     * Adds an attempt, made by the given student, to the index of
+     * attempts by quiz.
+     *
+     * @param student    The student
+     * @param subject    The identifier of the subject
+     * @param difficulty The difficulty
+     * @param percentage The percentage the student attained
+     */
+    void addAttempt(final Student student, final String subject, final Difficulty difficulty,
+                    final int percentage) {
+        this.byQuiz.computeIfAbsent(subject, id -> new EnumMap<>(Difficulty.class))
+                .computeIfAbsent(difficulty, key -> new Quiz())
+                .add(student, percentage);
+    }
+
+    /**
+     * Gets the student of the given username.
+     *
+     * @param username The username
+     * @return The student, or {@code null} should no student of that
+     *         username exist
+     */
+    Student get(final String username) {
+        // Should usernames collide, the first student keeps it - as they
+        // always have
+        return this.get(username, 0);
+    }
+
+    /**
+     * Gets the student of the given username, and occurrence of that
+     * username.
+     *
+     * @param username   The username
+     * @param occurrence The number of students of that username added
+     *                   before the student
+     * @return The student, or {@code null} should no such student exist
+     */
+    Student get(final String username, final int occurrence) {
+        final List<Student> students = this.byUsername.get(username);
+        return students == null || occurrence >= students.size() ? null : students.get(occurrence);
+    }
+
+    /**
+     * Gets the number of students of the given username added before the
+     * given student.
+     *
+     * @param student The student
+     * @return The occurrence of the student's username
+     */
+    int occurrenceOf(final Student student) {
+        final List<Student> students = this.byUsername.get(student.getUsername());
+        for (int i = 0; students != null && i < students.size(); i++) {
+            if (students.get(i) == student) return i;
+        }
+        throw new IllegalArgumentException("The student " + student.getUsername() + " isn't indexed!");
+    }
+
+    /**
+     * Gets the number of students of the given username.
+     *
+     * @param username The username
+     * @return The number of students
+     */
+    int count(final String username) {
+        final List<Student> students = this.byUsername.get(username);
+        return students == null ? 0 : students.size();
+    }
+
+    /**
+     * Establishes whether a student of the given username exists.
+     *
+     * @param username The username
+     * @return {@code true} if a student of that username exists,
+     *         {@code false} otherwise
+     */
+    boolean contains(final String username) {
+        return this.byUsername.containsKey(username);
+    }
+
+    /**
+     * Gets the number of students.
+     *
+     * @return The number of students
+     */
+    int size() {
+        return this.students.size();
+    }
+
+    /**
+     * Gets an immutable view of the students, in the order they were
+     * added.
+     *
+     * @return The students
+     */
+    List<Student> getStudents() {
+        return Collections.unmodifiableList(this.students);
+    }
+
+    /**
+     * Gets a copy of the students within the given year group.
+     *
+     * @param yearGroup The year group
+     * @return The students
+     */
+    List<Student> getStudentsInYearGroup(final String yearGroup) {
+        return new ArrayList<>(this.byYearGroup.getOrDefault(yearGroup, Collections.emptyList()));
+    }
+
+    /**
+     * Gets the results of the attempts made at the given quiz, in the
+     * order they were made.
+     *
+     * @param subject    The identifier of the subject
+     * @param difficulty The difficulty
+     * @return The results
+     */
+    List<QuizResult> getResults(final String subject, final Difficulty difficulty) {
+        final Quiz quiz = this.getQuiz(subject, difficulty);
+        if (quiz == null) return new ArrayList<>();
+
+        final List<QuizResult> results = new ArrayList<>(quiz.size);
+        for (int i = 0; i < quiz.size; i++) {
+            results.add(new QuizResult(quiz.students[i], quiz.percentages[i]));
+        }
+        return results;
+    }
+
+    /**
+     * Gets a copy of the aggregate of the attempts made at the given quiz.
+     *
+     * @param subject    The identifier of the subject
+     * @param difficulty The difficulty
+     * @return The aggregate
+     */
+    QuizAggregate getAggregate(final String subject, final Difficulty difficulty) {
+        final Quiz quiz = this.getQuiz(subject, difficulty);
+        return quiz == null ? new QuizAggregate() : quiz.aggregate.copy();
+    }
+
+    private Quiz getQuiz(final String subject, final Difficulty difficulty) {
+        final Map<Difficulty, Quiz> difficulties = this.byQuiz.get(subject);
+        return difficulties == null ? null : difficulties.get(difficulty);
+    }
+
+    /**
+     * Gets a copy of the students with the admin flag.
+     *
+     * @return The admins
+     */
+    List<Student> getAdmins() {
+        return new ArrayList<>(this.admins);
+    }
+
+    /**
+     * The postings of the attempts made at a quiz, and their aggregate.
+     */
+    private static final class Quiz {
+
+        private Student[] students = new Student[8];
+        // Percentages are 0-100, so fit within a byte
+        private byte[] percentages = new byte[8];
+        private int size;
+        private final QuizAggregate aggregate = new QuizAggregate();
+
+        void add(final Student student, final int percentage) {
+            if (this.size == this.students.length) {
+                this.students = Arrays.copyOf(this.students, this.size * 2);
+                this.percentages = Arrays.copyOf(this.percentages, this.size * 2);
+            }
+            this.students[this.size] = student;
+            this.percentages[this.size] = (byte) Math.max(0, Math.min(100, percentage));
+            this.size++;
+            this.aggregate.add(student, percentage);
+        }
+
+    }
+
+}
@@ -0,0 +1,269 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.store;
+
+import me.jamiemansfield.csnea.model.Attempt;
+import me.jamiemansfield.csnea.model.Student;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A write-behind persister for the students, that takes writing the
+ * journal and snapshot off of the thread serving the student.
+ *
+ * <p>Changes are queued as they are made, and committed to the journal
+ * by a background thread - as a single write, every
+ * {@code fergus.persist.interval} milliseconds (default: 1000), or once
+ * {@code fergus.persist.batchSize} changes (default: 64) have been
+ * queued. Once the journal has grown large enough, it is folded back
+ * into the snapshot - rewriting only the shards that have changed.</p>
+ */
+public final class StudentPersister implements Closeable {
+
+    /**
+     * The interval, in milliseconds, between commits.
+     */
+    private static final long INTERVAL = Long.getLong("fergus.persist.interval", 1000);
+
+    /**
+     * The number of queued changes that will trigger a commit, before
+     * the interval has elapsed.
+     */
+    private static final int BATCH_SIZE = Integer.getInteger("fergus.persist.batchSize", 64);
+
+    private final StudentSnapshot snapshot;
+    private final Journal journal;
+    private final int checkpointInterval;
+    private final Function<Predicate<Student>, List<Student>> copier;
+
+    private final Queue<Consumer<Journal>> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicBoolean commitRequested = new AtomicBoolean();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "Fergus Persister");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Whether the persister has closed, guarded by the queue - so no
+    // change can be queued once the final commit has begun
+    private boolean closed = false;
+
+    /**
+     * Creates a persister for the given snapshot.
+     *
+     * @param snapshot           The snapshot
+     * @param journalPath        The path of the journal
+     * @param checkpointInterval The number of journal records after which
+     *                           they are folded into the snapshot
+     * @param copier             A function producing a consistent copy of
+     *                           the students matching the given filter, to
+     *                           write to the snapshot
+     */
+    public StudentPersister(final StudentSnapshot snapshot, final Path journalPath, final int checkpointInterval,
+                            final Function<Predicate<Student>, List<Student>> copier) {
+        this.snapshot = snapshot;
+        this.journal = new Journal(journalPath);
+        this.checkpointInterval = checkpointInterval;
+        this.copier = copier;
+    }
+
+    /**
+     * Starts committing the queued changes in the background.
+     */
+    public void start() {
+        this.executor.scheduleWithFixedDelay(this::commitInBackground, INTERVAL, INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Replays the journal to the given {@link Journal.Replayer}.
+     *
+     * @param replayer The replayer
+     * @return The number of records replayed
+     * @see Journal#replay(Journal.Replayer)
+     */
+    public int replay(final Journal.Replayer replayer) {
+        return this.journal.replay(replayer);
+    }
+
+    /**
+     * Queues the given student having been registered.
+     *
+     * <em>This should be called as the student is registered, so the
+     * student's shard is marked as changed before any copy is taken.</em>
+     *
+     * @param student    The student
+     * @param occurrence The number of students of the student's username
+     *                   registered before them
+     */
+    public void studentRegistered(final Student student, final int occurrence) {
+        this.snapshot.markDirty(student.getUsername());
+        this.enqueue(journal -> journal.studentRegistered(student, occurrence));
+    }
+
+    /**
+     * Queues the given attempt having been made by the given student.
+     *
+     * <em>This should be called as the attempt is added, so the
+     * student's shard is marked as changed before any copy is taken.</em>
+     *
+     * @param student    The student
+     * @param occurrence The number of students of the student's username
+     *                   registered before them
+     * @param index      The position of the attempt, within the student's
+     *                   attempts
+     * @param attempt    The attempt
+     */
+    public void attemptRecorded(final Student student, final int occurrence, final int index,
+                                final Attempt attempt) {
+        this.snapshot.markDirty(student.getUsername());
+        this.enqueue(journal -> journal.attemptRecorded(student, occurrence, index, attempt));
+    }
+
+    /**
+     * Queues the given student's password having been changed.
+     *
+     * <em>This should be called as the password is changed, so the
+     * student's shard is marked as changed before any copy is taken.</em>
+     *
+     * @param student    The student
+     * @param occurrence The number of students of the student's username
+     *                   registered before them
+     */
+    public void passwordChanged(final Student student, final int occurrence) {
+        this.snapshot.markDirty(student.getUsername());
+
+        // Take the password now, should it be changed again before the
+        // change is committed
+        final String username = student.getUsername();
+        final String password = student.getPassword();
+        this.enqueue(journal -> journal.passwordChanged(username, occurrence, password));
+    }
+
+    /**
+     * Commits the queued changes to the journal, folding the journal into
+     * the snapshot should it have grown past the checkpoint interval.
+     */
+    public synchronized void commit() {
+        // Changes queued from now on may request another commit
+        this.commitRequested.set(false);
+
+        // Group all of the queued changes into a single write
+        Consumer<Journal> change;
+        while ((change = this.queue.poll()) != null) {
+            change.accept(this.journal);
+            this.queued.decrementAndGet();
+        }
+        this.journal.flush();
+
+        if (this.journal.getRecords() >= this.checkpointInterval) {
+            this.checkpoint();
+        }
+    }
+
+    /**
+     * Folds the journal back into the snapshot.
+     *
+     * <em>The journal is only truncated once the snapshot has been
+     * written, should the program crash in-between then replaying
+     * the journal is harmless.</em>
+     */
+    public synchronized void checkpoint() {
+        this.journal.flush();
+
+        // Only the changed shards need to be written
+        final BitSet shards = this.snapshot.takeDirty();
+        if (!shards.isEmpty()) {
+            final List<Student> students = this.copier.apply(student ->
+                    shards.get(this.snapshot.shardOf(student.getUsername())));
+            try {
+                this.snapshot.write(students, shards);
+            } catch (final RuntimeException ex) {
+                this.snapshot.markDirty(shards);
+                throw ex;
+            }
+        }
+
+        this.journal.truncate();
+    }
+
+    /**
+     * Stops the background commits, and commits any remaining changes -
+     * folding them into the snapshot.
+     */
+    @Override
+    public synchronized void close() {
+        synchronized (this.queue) {
+            if (this.closed) return;
+            this.closed = true;
+        }
+
+        this.executor.shutdown();
+        this.commit();
+        if (this.journal.getRecords() > 0) this.checkpoint();
+
+        try {
+            this.journal.close();
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to close the journal!", ex);
+        }
+    }
+
+    /**
+     * Queues the given change, committing early should enough changes
+     * have been queued.
+     *
+     * @param change The change
+     * @throws IllegalStateException Should the persister have closed
+     */
+    private void enqueue(final Consumer<Journal> change) {
+        synchronized (this.queue) {
+            if (this.closed) throw new IllegalStateException("The persister has closed, the change can't be saved!");
+            this.queue.add(change);
+        }
+
+        // Only request one early commit at a time
+        if (this.queued.incrementAndGet() >= BATCH_SIZE && this.commitRequested.compareAndSet(false, true)) {
+            try {
+                this.executor.execute(this::commitInBackground);
+            } catch (final RejectedExecutionException ignored) {
+                // The persister is closing, its final commit was begun
+                // after the change was queued - so will commit it
+            }
+        }
+    }
+
+    /**
+     * Commits the queued changes, reporting - rather than throwing - any
+     * failure, so the background commits continue.
+     */
+    private void commitInBackground() {
+        try {
+            this.commit();
+        } catch (final RuntimeException ex) {
+            System.err.println("Failed to persist the students, will retry.");
+            ex.printStackTrace();
+        }
+    }
+
+}
@@ -0,0 +1,180 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.store;
+
+import static me.jamiemansfield.csnea.FergusMain.CHECKPOINT_INTERVAL;
+import static me.jamiemansfield.csnea.FergusMain.RESIDENT_HISTORIES;
+import static me.jamiemansfield.csnea.FergusMain.SHARDS;
+import static me.jamiemansfield.csnea.FergusMain.STUDENTS_DB;
+import static me.jamiemansfield.csnea.FergusMain.STUDENTS_JOURNAL;
+
+import me.jamiemansfield.csnea.Difficulty;
+import me.jamiemansfield.csnea.model.Attempt;
+import me.jamiemansfield.csnea.model.Student;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * The store of all the students registered to Fergus' Quiz.
+ *
+ * <em>The store used can be chosen with the {@code fergus.store}
+ * system property.</em>
+ */
+public interface StudentRepository extends Closeable {
+
+    /**
+     * Opens the student repository selected by the {@code fergus.store}
+     * system property, defaulting to the snapshot store.
+     *
+     * @return The student repository
+     */
+    static StudentRepository open() {
+        final String rawStore = System.getProperty("fergus.store", "snapshot");
+        final Supplier<StudentRepository> snapshot = () -> new SnapshotStudentRepository(
+                new StudentSnapshot(StudentFormat.selected(), SHARDS), STUDENTS_JOURNAL, CHECKPOINT_INTERVAL);
+        switch (rawStore) {
+            case "snapshot":
+                return snapshot.get();
+            case "log":
+                // The students are imported from the snapshot, should the
+                // store not exist yet
+                return new LogStudentRepository(STUDENTS_DB, RESIDENT_HISTORIES, snapshot);
+            default:
+                throw new RuntimeException("Unknown student store: " + rawStore);
+        }
+    }
+
+    /**
+     * Gets the student of the provided username.
+     *
+     * @param username The student's username
+     * @return The student, or {@code null} should no student of that
+     *         username exist
+     */
+    Student get(final String username);
+
+    /**
+     * Gets the student of the provided username, should the provided
+     * password be theirs.
+     *
+     * <p>Should the student's password have been hashed with a scheme,
+     * or cost, other than that now used - it is re-hashed, now the
+     * password is known.</p>
+     *
+     * @param username The student's username
+     * @param password The raw password
+     * @return The student, or {@code null} should no student of that
+     *         username exist, or the password be incorrect
+     */
+    default Student authenticate(final String username, final String password) {
+        final Student student = this.get(username);
+        if (student == null || !student.testPassword(password)) return null;
+
+        if (student.isPasswordOutdated()) this.changePassword(student, password);
+        return student;
+    }
+
+    /**
+     * Establishes whether a student of the provided username exists.
+     *
+     * @param username The student's username
+     * @return {@code true} if a student of that username exists,
+     *         {@code false} otherwise
+     */
+    boolean contains(final String username);
+
+    /**
+     * Gets the number of students registered.
+     *
+     * @return The number of students
+     */
+    int size();
+
+    /**
+     * Gets an immutable view of the students.
+     *
+     * @return The students
+     */
+    List<Student> getStudents();
+
+    /**
+     * Gets the students within the given year group.
+     *
+     * @param yearGroup The year group
+     * @return The students
+     */
+    List<Student> getStudentsInYearGroup(final String yearGroup);
+
+    /**
+     * Gets the students with the admin flag.
+     *
+     * @return The admins
+     */
+    List<Student> getAdmins();
+
+    /**
+     * Gets the results of the attempts made at the given quiz, in the
+     * order they were made.
+     *
+     * @param subject    The identifier of the subject
+     * @param difficulty The difficulty
+     * @return The results
+     */
+    List<QuizResult> getResults(final String subject, final Difficulty difficulty);
+
+    /**
+     * Gets the aggregate of the attempts made at the given quiz.
+     *
+     * @param subject    The identifier of the subject
+     * @param difficulty The difficulty
+     * @return The aggregate
+     */
+    QuizAggregate getAggregate(final String subject, final Difficulty difficulty);
+
+    /**
+     * Creates a copy of the students, and their attempts, that is safe to
+     * use while students continue to be registered and make attempts.
+     *
+     * @return A copy of the students
+     */
+    List<Student> copyStudents();
+
+    /**
+     * Registers the given {@link Student}.
+     *
+     * @param student The student to register
+     */
+    void register(final Student student);
+
+    /**
+     * Changes the password of the given {@link Student}, salting and
+     * hashing it with the scheme now used.
+     *
+     * @param student  The student
+     * @param password The raw password
+     */
+    void changePassword(final Student student, final String password);
+
+    /**
+     * Records the given {@link Attempt} as having been made by the
+     * given {@link Student}.
+     *
+     * @param student The student
+     * @param attempt The attempt the student made
+     */
+    void recordAttempt(final Student student, final Attempt attempt);
+
+    /**
+     * Persists any outstanding changes, and closes the repository.
+     */
+    @Override
+    void close();
+
+}
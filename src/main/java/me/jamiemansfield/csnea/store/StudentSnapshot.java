@@ -0,0 +1,234 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.store;
+
+import me.jamiemansfield.csnea.model.Student;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The snapshot of the students, partitioned by a hash of their username
+ * into a number of shards - each of which is its own file, so that only
+ * the shards containing changed students need to be written.
+ *
+ * <p>With a single shard, the snapshot is the format's usual file (e.g.
+ * students.xml). With more, the shards are kept within the students
+ * directory (e.g. students/shard-0.xml).</p>
+ */
+public final class StudentSnapshot {
+
+    private final StudentFormat format;
+    private final int shards;
+    private final BitSet dirty;
+
+    /**
+     * Creates a snapshot of the given format, and number of shards.
+     *
+     * @param format The format of the snapshot
+     * @param shards The number of shards
+     */
+    public StudentSnapshot(final StudentFormat format, final int shards) {
+        if (shards < 1) throw new IllegalArgumentException("There must be at least one shard!");
+        this.format = format;
+        this.shards = shards;
+        this.dirty = new BitSet(shards);
+    }
+
+    /**
+     * Gets the format of the snapshot.
+     *
+     * @return The format
+     */
+    public StudentFormat getFormat() {
+        return this.format;
+    }
+
+    /**
+     * Gets the number of shards the students are partitioned into.
+     *
+     * @return The number of shards
+     */
+    public int getShards() {
+        return this.shards;
+    }
+
+    /**
+     * Gets the path of the given shard.
+     *
+     * @param shard The shard
+     * @return The path of the shard
+     */
+    public Path getPath(final int shard) {
+        if (this.shards == 1) return this.format.getPath();
+
+        // e.g. students.xml -> students/shard-0.xml
+        final String fileName = this.format.getPath().getFileName().toString();
+        final int extension = fileName.lastIndexOf('.');
+        return this.format.getPath().resolveSibling(fileName.substring(0, extension))
+                .resolve("shard-" + shard + fileName.substring(extension));
+    }
+
+    /**
+     * Gets the shard that the student of the given username belongs to.
+     *
+     * @param username The username of the student
+     * @return The shard
+     */
+    public int shardOf(final String username) {
+        return Math.floorMod(username.hashCode(), this.shards);
+    }
+
+    /**
+     * Establishes whether the snapshot exists.
+     *
+     * @return {@code true} if every shard exists;
+     *         {@code false} otherwise
+     * @throws RuntimeException Should the existing snapshot have been
+     *                          written with a different number of shards
+     */
+    public boolean exists() {
+        final int existing = countExistingShards(this.format);
+        if (existing != 0 && existing != this.shards) {
+            throw new RuntimeException("The students snapshot has " + existing + " shards, rather than the " +
+                    this.shards + " configured! Use the ShardMigration tool to change the number of shards.");
+        }
+        return IntStream.range(0, this.shards).allMatch(shard -> Files.exists(this.getPath(shard)));
+    }
+
+    /**
+     * Counts the number of shards that the existing snapshot, of the
+     * given format, was written with.
+     *
+     * @param format The format of the snapshot
+     * @return The number of shards, or {@code 0} should there be no
+     *         snapshot
+     */
+    public static int countExistingShards(final StudentFormat format) {
+        int shards = 0;
+        final StudentSnapshot sharded = new StudentSnapshot(format, 2);
+        while (Files.exists(sharded.getPath(shards))) {
+            shards++;
+        }
+        if (shards == 0 && Files.exists(format.getPath())) return 1;
+        return shards;
+    }
+
+    /**
+     * Reads the students from every shard, in parallel.
+     *
+     * @return The students
+     */
+    public List<Student> read() {
+        return IntStream.range(0, this.shards).parallel()
+                .mapToObj(shard -> this.format.read(this.getPath(shard)))
+                .flatMap(List::stream)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    /**
+     * Marks the shard of the student, of the given username, as having
+     * changed since it was last written.
+     *
+     * @param username The username of the student
+     */
+    public void markDirty(final String username) {
+        synchronized (this.dirty) {
+            this.dirty.set(this.shardOf(username));
+        }
+    }
+
+    /**
+     * Marks the given shards as having changed since they were last
+     * written.
+     *
+     * @param shards The shards
+     */
+    public void markDirty(final BitSet shards) {
+        synchronized (this.dirty) {
+            this.dirty.or(shards);
+        }
+    }
+
+    /**
+     * Takes the shards that have changed since they were last written,
+     * marking them as clean.
+     *
+     * @return The changed shards
+     */
+    public BitSet takeDirty() {
+        synchronized (this.dirty) {
+            final BitSet taken = (BitSet) this.dirty.clone();
+            this.dirty.clear();
+            return taken;
+        }
+    }
+
+    /**
+     * Writes the given students, to every shard.
+     *
+     * @param students The students
+     */
+    public void write(final List<Student> students) {
+        final BitSet all = new BitSet(this.shards);
+        all.set(0, this.shards);
+        this.write(students, all);
+    }
+
+    /**
+     * Writes the given students to the given shards, the students
+     * should be all of those within the shards.
+     *
+     * @param students The students
+     * @param shards   The shards to write
+     */
+    public void write(final List<Student> students, final BitSet shards) {
+        // Partition the students into their shards
+        final List<List<Student>> partitions = new ArrayList<>(this.shards);
+        for (int i = 0; i < this.shards; i++) {
+            partitions.add(new ArrayList<>());
+        }
+        students.forEach(student -> partitions.get(this.shardOf(student.getUsername())).add(student));
+
+        shards.stream().forEach(shard -> this.writeShard(shard, partitions.get(shard)));
+    }
+
+    /**
+     * Writes the given shard through a temporary file - so a crash will
+     * never leave a half-written shard.
+     *
+     * @param shard    The shard
+     * @param students The students within the shard
+     */
+    private void writeShard(final int shard, final List<Student> students) {
+        final Path path = this.getPath(shard);
+        final Path temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try {
+            if (path.getParent() != null) Files.createDirectories(path.getParent());
+            this.format.write(students, temporaryPath);
+
+            try {
+                Files.move(temporaryPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (final AtomicMoveNotSupportedException ex) {
+                Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to update the " + path + " file!", ex);
+        }
+    }
+
+}
@@ -0,0 +1,328 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.util.concurrent;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An executor that runs the tasks of each key in order, one at a time,
+ * while the tasks of different keys run in parallel - upon a shared,
+ * fixed, pool of threads.
+ *
+ * <p>Each key has a mailbox, a queue of its waiting tasks, which is
+ * given to the pool to run a task from whenever it has any. Mailboxes
+ * are bounded - should one be full, further tasks for its key are
+ * rejected until it has caught up. Once the executor has stopped, every
+ * task is rejected.</p>
+ *
+ * @param <K> The type of the keys
+ */
+public final class MailboxExecutor<K> {
+
+    // The key of the mailbox being run by the current thread, so a task
+    // may run another task of its key without waiting on itself
+    private static final ThreadLocal<Object> CURRENT_KEY = new ThreadLocal<>();
+
+    private final ExecutorService pool;
+    private final int capacity;
+    private final Map<K, Mailbox> mailboxes = new ConcurrentHashMap<>();
+
+    // Metrics
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * Creates a mailbox executor.
+     *
+     * @param name     The name of the pool's threads
+     * @param threads  The number of threads in the pool
+     * @param capacity The number of tasks each mailbox may hold
+     */
+    public MailboxExecutor(final String name, final int threads, final int capacity) {
+        final AtomicInteger count = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, name + " #" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.capacity = capacity;
+    }
+
+    /**
+     * Submits the given task, to be run after every task previously
+     * submitted for the key.
+     *
+     * @param key  The key
+     * @param task The task
+     * @return The future of the task
+     * @throws RejectedExecutionException Should the key's mailbox be full,
+     *                                    or the executor have stopped
+     */
+    public Future<?> submit(final K key, final Runnable task) {
+        final FutureTask<Void> future = new FutureTask<>(task, null);
+
+        // Already running a task of the key, it can't wait on itself
+        if (key.equals(CURRENT_KEY.get())) {
+            future.run();
+            return future;
+        }
+
+        final Mailbox mailbox = this.mailboxes.compute(key, (k, existing) -> {
+            if (this.pool.isShutdown()) {
+                this.rejected.incrementAndGet();
+                throw new RejectedExecutionException("The executor has stopped!");
+            }
+            final Mailbox box = existing == null ? new Mailbox(k) : existing;
+            if (box.tasks.size() >= this.capacity) {
+                this.rejected.incrementAndGet();
+                throw new RejectedExecutionException("The mailbox of " + k + " is full!");
+            }
+            box.tasks.add(future);
+            this.maxDepth.accumulateAndGet(box.tasks.size(), Math::max);
+            return box;
+        });
+        this.submitted.incrementAndGet();
+        this.queued.incrementAndGet();
+        this.schedule(mailbox);
+        return future;
+    }
+
+    /**
+     * Submits the given task, and waits for it to complete - rethrowing
+     * anything it throws.
+     *
+     * @param key  The key
+     * @param task The task
+     * @throws RejectedExecutionException Should the key's mailbox be full,
+     *                                    or the executor have stopped
+     * @throws InterruptedException Should the wait be interrupted
+     */
+    public void submitAndWait(final K key, final Runnable task) throws InterruptedException {
+        final Future<?> future = this.submit(key, task);
+        try {
+            future.get();
+        } catch (final CancellationException ex) {
+            // The executor stopped before the task could be run
+            throw new RejectedExecutionException("The executor has stopped!", ex);
+        } catch (final InterruptedException ex) {
+            // Only stop the task should it not have started - interrupting
+            // a task mid-write would close the channel it is writing to
+            future.cancel(false);
+            throw ex;
+        } catch (final ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) throw (RuntimeException) ex.getCause();
+            if (ex.getCause() instanceof Error) throw (Error) ex.getCause();
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
+    private void schedule(final Mailbox mailbox) {
+        // Only one thread runs a mailbox at a time
+        if (!mailbox.scheduled.compareAndSet(false, true)) return;
+
+        try {
+            this.pool.execute(mailbox);
+        } catch (final RejectedExecutionException ex) {
+            // The executor stopped meanwhile, so the mailbox's tasks will
+            // never be run
+            mailbox.scheduled.set(false);
+            this.cancel(mailbox.key);
+        }
+    }
+
+    /**
+     * Cancels the waiting tasks of the given key, removing its mailbox.
+     *
+     * @param key The key
+     */
+    private void cancel(final K key) {
+        this.mailboxes.computeIfPresent(key, (k, box) -> {
+            FutureTask<?> task;
+            while ((task = box.tasks.poll()) != null) {
+                this.queued.decrementAndGet();
+                task.cancel(false);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Gets a snapshot of the executor's metrics.
+     *
+     * @return The metrics
+     */
+    public Stats getStats() {
+        return new Stats(this.mailboxes.size(), this.queued.get(), this.maxDepth.get(),
+                this.submitted.get(), this.completed.get(), this.rejected.get());
+    }
+
+    /**
+     * Stops the executor, cancelling the tasks waiting - those running
+     * are left to complete, as interrupting a task mid-write would close
+     * the channel it is writing to.
+     */
+    public void shutdown() {
+        this.pool.shutdown();
+        this.mailboxes.keySet().forEach(this::cancel);
+    }
+
+    /**
+     * Waits for the tasks running to complete, after the executor has
+     * been stopped.
+     *
+     * @param timeout The longest time to wait
+     * @param unit    The unit of the timeout
+     * @return {@code true} if every task completed;
+     *         {@code false} if the timeout elapsed first
+     * @throws InterruptedException Should the wait be interrupted
+     */
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return this.pool.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * The queue of tasks waiting to be run, for a key.
+     */
+    private final class Mailbox implements Runnable {
+
+        private final K key;
+        private final Queue<FutureTask<?>> tasks = new ArrayDeque<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        Mailbox(final K key) {
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            // Take the next task, removing the mailbox once it is empty
+            final Runnable[] next = new Runnable[1];
+            mailboxes.computeIfPresent(this.key, (k, box) -> {
+                next[0] = box.tasks.poll();
+                return next[0] == null ? null : box;
+            });
+
+            if (next[0] != null) {
+                queued.decrementAndGet();
+                CURRENT_KEY.set(this.key);
+                try {
+                    next[0].run();
+                } finally {
+                    CURRENT_KEY.remove();
+                    completed.incrementAndGet();
+                }
+            }
+
+            // Give the other mailboxes a turn, before running any more
+            // of this mailbox's tasks
+            this.scheduled.set(false);
+            if (next[0] != null) {
+                final Mailbox current = mailboxes.get(this.key);
+                if (current != null) schedule(current);
+            }
+        }
+
+    }
+
+    /**
+     * A snapshot of the metrics of a {@link MailboxExecutor}.
+     */
+    public static final class Stats {
+
+        private final int mailboxes;
+        private final int queued;
+        private final int maxDepth;
+        private final long submitted;
+        private final long completed;
+        private final long rejected;
+
+        Stats(final int mailboxes, final int queued, final int maxDepth,
+              final long submitted, final long completed, final long rejected) {
+            this.mailboxes = mailboxes;
+            this.queued = queued;
+            this.maxDepth = maxDepth;
+            this.submitted = submitted;
+            this.completed = completed;
+            this.rejected = rejected;
+        }
+
+        /**
+         * Gets the number of mailboxes with tasks waiting, or running.
+         *
+         * @return The number of mailboxes
+         */
+        public int getMailboxes() {
+            return this.mailboxes;
+        }
+
+        /**
+         * Gets the number of tasks waiting, across every mailbox.
+         *
+         * @return The number of tasks
+         */
+        public int getQueued() {
+            return this.queued;
+        }
+
+        /**
+         * Gets the most tasks that have waited in a single mailbox.
+         *
+         * @return The max depth
+         */
+        public int getMaxDepth() {
+            return this.maxDepth;
+        }
+
+        /**
+         * Gets the number of tasks submitted.
+         *
+         * @return The number of tasks
+         */
+        public long getSubmitted() {
+            return this.submitted;
+        }
+
+        /**
+         * Gets the number of tasks that have been run.
+         *
+         * @return The number of tasks
+         */
+        public long getCompleted() {
+            return this.completed;
+        }
+
+        /**
+         * Gets the number of tasks rejected, as their mailbox was full or
+         * the executor had stopped.
+         *
+         * @return The number of tasks
+         */
+        public long getRejected() {
+            return this.rejected;
+        }
+
+    }
+
+}
@@ -0,0 +1,172 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.util.concurrent;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * A loader of many files at once, upon a fork/join pool - used so the
+ * program starts as quickly as the machine's cores allow.
+ *
+ * <p>Should any file fail to load, the others are loaded regardless -
+ * so every failure can be reported at once, by {@link #await()}.</p>
+ */
+public final class ParallelLoader {
+
+    private final ForkJoinPool pool = new ForkJoinPool();
+    private final PrintStream log;
+    private final long start = System.nanoTime();
+
+    private final Queue<ForkJoinTask<?>> tasks = new ConcurrentLinkedQueue<>();
+    private final List<Failure> failures = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * Creates a loader.
+     *
+     * @param log The stream to print the time each file took to load
+     *            to, or {@code null} to print nothing
+     */
+    public ParallelLoader(final PrintStream log) {
+        this.log = log;
+    }
+
+    /**
+     * Loads a file, in parallel to the others - files may be loaded by
+     * those already loading, so long as the loader is yet to be awaited.
+     *
+     * @param name   The name of the file, as to be reported
+     * @param loader The loader of the file
+     * @param <T> The type of the file's contents
+     * @return The task, joining which gives the file's contents - or
+     *         {@code null} should it have failed to load
+     */
+    public <T> ForkJoinTask<T> fork(final String name, final Callable<T> loader) {
+        final ForkJoinTask<T> task = ForkJoinTask.adapt(() -> {
+            final long start = System.nanoTime();
+            try {
+                final T result = loader.call();
+                if (this.log != null) {
+                    this.log.printf("Loaded %s in %.1fms%n", name, (System.nanoTime() - start) / 1_000_000.0);
+                }
+                return result;
+            } catch (final Throwable ex) {
+                this.failures.add(new Failure(name, ex));
+                return null;
+            }
+        });
+        this.tasks.add(task);
+        this.pool.execute(task);
+        return task;
+    }
+
+    /**
+     * Waits for every file to be loaded, including those forked whilst
+     * waiting.
+     *
+     * @throws LoadException Should any file have failed to load
+     */
+    public void await() {
+        ForkJoinTask<?> task;
+        while ((task = this.tasks.poll()) != null) {
+            task.join();
+        }
+        this.pool.shutdown();
+
+        if (this.log != null) {
+            this.log.printf("Loaded everything in %.1fms%n", (System.nanoTime() - this.start) / 1_000_000.0);
+        }
+        if (!this.failures.isEmpty()) throw new LoadException(this.failures);
+    }
+
+    /**
+     * A file that failed to load, and why.
+     */
+    public static final class Failure {
+
+        private final String name;
+        private final Throwable cause;
+
+        Failure(final String name, final Throwable cause) {
+            this.name = name;
+            this.cause = cause;
+        }
+
+        /**
+         * Gets the name of the file.
+         *
+         * @return The name
+         */
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * Gets the reason the file failed to load.
+         *
+         * @return The reason
+         */
+        public Throwable getCause() {
+            return this.cause;
+        }
+
+    }
+
+    /**
+     * The exception thrown should any files fail to load, reporting
+     * every one of them.
+     */
+    public static final class LoadException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        // Not kept should the exception be serialised, though the causes
+        // are - as suppressed exceptions
+        private final transient List<Failure> failures;
+
+        LoadException(final List<Failure> failures) {
+            super(describe(failures));
+            this.failures = new ArrayList<>(failures);
+            this.failures.forEach(failure -> this.addSuppressed(failure.getCause()));
+        }
+
+        /**
+         * Gets the files that failed to load.
+         *
+         * @return The failures
+         */
+        public List<Failure> getFailures() {
+            if (this.failures == null) return Collections.emptyList();
+            return Collections.unmodifiableList(this.failures);
+        }
+
+        private static String describe(final List<Failure> failures) {
+            final StringBuilder message = new StringBuilder()
+                    .append("Failed to load ").append(failures.size())
+                    .append(failures.size() == 1 ? " file!" : " files!");
+            for (final Failure failure : failures) {
+                message.append(System.lineSeparator()).append("  ").append(failure.getName()).append(": ");
+                // Report the root cause too, as that's what needs fixing
+                Throwable cause = failure.getCause();
+                while (cause.getCause() != null) cause = cause.getCause();
+                message.append(failure.getCause().getMessage());
+                if (cause != failure.getCause()) message.append(" (").append(cause).append(")");
+            }
+            return message.toString();
+        }
+
+    }
+
+}
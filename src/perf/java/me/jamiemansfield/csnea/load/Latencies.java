@@ -0,0 +1,77 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.load;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The latencies recorded for a single operation, along with how many
+ * of its attempts failed.
+ */
+final class Latencies {
+
+    private long[] nanos = new long[1024];
+    private int count = 0;
+    private int errors = 0;
+
+    /**
+     * Records a successful operation.
+     *
+     * @param latency The latency, in nanoseconds
+     */
+    synchronized void record(final long latency) {
+        if (this.count == this.nanos.length) {
+            this.nanos = Arrays.copyOf(this.nanos, this.count * 2);
+        }
+        this.nanos[this.count++] = latency;
+    }
+
+    /**
+     * Records a failed operation.
+     */
+    synchronized void error() {
+        this.errors++;
+    }
+
+    /**
+     * Gets the number of successful operations.
+     *
+     * @return The count
+     */
+    synchronized int getCount() {
+        return this.count;
+    }
+
+    /**
+     * Writes the latencies as a JSON object.
+     *
+     * @param duration The duration of the run, in nanoseconds
+     * @return The JSON
+     */
+    synchronized String toJson(final long duration) {
+        final long[] sorted = Arrays.copyOf(this.nanos, this.count);
+        Arrays.sort(sorted);
+        final double mean = this.count == 0 ? 0 : Arrays.stream(sorted).average().orElse(0);
+
+        return String.format(Locale.ROOT,
+                "{\"count\":%d,\"errors\":%d,\"throughput\":%.2f,"
+                        + "\"latencyMs\":{\"mean\":%.3f,\"p50\":%.3f,\"p90\":%.3f,\"p99\":%.3f,\"max\":%.3f}}",
+                this.count, this.errors, this.count / (duration / 1e9),
+                mean / 1e6, percentile(sorted, 50) / 1e6, percentile(sorted, 90) / 1e6,
+                percentile(sorted, 99) / 1e6, percentile(sorted, 100) / 1e6);
+    }
+
+    private static long percentile(final long[] sorted, final int percentile) {
+        if (sorted.length == 0) return 0;
+        // The nearest-rank percentile
+        final int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+
+}
@@ -0,0 +1,515 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.load;
+
+import me.jamiemansfield.csnea.Difficulty;
+import me.jamiemansfield.csnea.FergusMain;
+import me.jamiemansfield.csnea.cli.Session;
+import me.jamiemansfield.csnea.command.CommandArgs;
+import me.jamiemansfield.csnea.model.Question;
+import me.jamiemansfield.csnea.model.QuestionSampler;
+import me.jamiemansfield.csnea.model.QuestionDefinitions;
+import me.jamiemansfield.csnea.model.Subject;
+import me.jamiemansfield.csnea.model.SubjectRegistry;
+import me.jamiemansfield.csnea.security.SessionTokens;
+import me.jamiemansfield.csnea.store.StudentRepository;
+import me.jamiemansfield.csnea.util.concurrent.MailboxExecutor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.StringJoiner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * A generator of load, simulating many students signing up, logging in
+ * and answering quizzes - reporting the throughput and latencies of
+ * each operation as JSON.
+ *
+ * <p>The load can be driven through the command layer, in process, or
+ * through the HTTP API of a running server. Either way, the generator
+ * must be run in a directory containing the subjects - as the correct
+ * answers are read from their question definitions (and drawn as the
+ * server draws them, so {@code fergus.quiz.questions} must match the
+ * server's). In process, should the subject not exist, a synthetic one
+ * is created.</p>
+ *
+ * <p>Options (all optional):</p>
+ * <pre>
+ *   -t &lt;commands|http&gt;   The target to drive (default: commands)
+ *   -u &lt;url&gt;             The URL of the HTTP server (default: http://localhost:8080)
+ *   -n &lt;students&gt;        The number of students to simulate (default: 1000)
+ *   -c &lt;concurrency&gt;     The number of students active at once (default: 16)
+ *   -q &lt;quizzes&gt;         The number of quizzes each student answers (default: 5)
+ *   -w &lt;ms&gt;              The think time between each operation (default: 0)
+ *   -a &lt;accuracy&gt;        The chance of answering a question correctly (default: 0.75)
+ *   -s &lt;subject&gt;         The subject of the quizzes (default: loadtest)
+ *   -d &lt;difficulty&gt;      The difficulty of the quizzes (default: easy)
+ *   -r &lt;seed&gt;            The seed of the answers given (default: 0)
+ *   -o &lt;file&gt;            The file to write the results to (default: standard output)
+ * </pre>
+ */
+public final class LoadGenerator {
+
+    private static final int SYNTHETIC_QUESTIONS = 10;
+    private static final String PASSWORD = "loadtest";
+
+    // Gives the students three character names, so their usernames are
+    // unique
+    private static final String NAME_CHARACTERS =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+
+    private static final PrintStream DISCARD = new PrintStream(new OutputStream() {
+        @Override
+        public void write(final int b) {
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+        }
+    });
+
+    public static void main(final String[] rawArgs) throws Exception {
+        final CommandArgs args = new CommandArgs(rawArgs);
+        final String target = args.getFlag("t", "commands");
+        final int students = Integer.parseInt(args.getFlag("n", "1000"));
+        final int concurrency = Integer.parseInt(args.getFlag("c", "16"));
+        final int quizzes = Integer.parseInt(args.getFlag("q", "5"));
+        final long thinkTime = Long.parseLong(args.getFlag("w", "0"));
+        final double accuracy = Double.parseDouble(args.getFlag("a", "0.75"));
+        final String subjectId = args.getFlag("s", "loadtest");
+        final Difficulty difficulty = Difficulty.get(args.getFlag("d", "easy"))
+                .orElseThrow(() -> new IllegalArgumentException("Invalid difficulty: " + args.getFlag("d")));
+        final long seed = Long.parseLong(args.getFlag("r", "0"));
+
+        if (students > Math.pow(NAME_CHARACTERS.length(), 3)) {
+            throw new IllegalArgumentException("Too many students to give unique usernames!");
+        }
+
+        // Find the questions to answer
+        if (!Files.exists(FergusMain.SUBJECTS_XML)
+                || !SubjectRegistry.load(FergusMain.SUBJECTS_XML).get(subjectId).isPresent()) {
+            if (!"commands".equals(target)) {
+                throw new IllegalArgumentException("The subject " + subjectId + " is not available to answer!");
+            }
+            synthesiseSubject(subjectId);
+        }
+        final SubjectRegistry subjects = SubjectRegistry.load(FergusMain.SUBJECTS_XML);
+        final Subject subject = subjects.get(subjectId).get();
+
+        final Driver driver;
+        switch (target) {
+            case "commands":
+                driver = new CommandDriver(StudentRepository.open(), subjects,
+                        new MailboxExecutor<>("Load Command", concurrency, FergusMain.COMMAND_MAILBOX));
+                break;
+            case "http":
+                // Allow a kept alive connection for every student
+                System.setProperty("http.maxConnections", Integer.toString(concurrency));
+                driver = new HttpDriver(args.getFlag("u", "http://localhost:8080"));
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid target: " + target);
+        }
+
+        final Map<String, Latencies> operations = Collections.synchronizedMap(new LinkedHashMap<>());
+        final ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        final long start = System.nanoTime();
+        for (int i = 0; i < students; i++) {
+            final int id = i;
+            executor.execute(() -> {
+                final Random random = new Random(seed * 31 + id);
+                final Client client = driver.connect(name(id), 12, "7");
+                try {
+                    time(operations, "signup", client::signup);
+                    think(thinkTime);
+                    time(operations, "login", client::login);
+                    for (int quiz = 0; quiz < quizzes; quiz++) {
+                        think(thinkTime);
+                        // The quiz's questions are drawn from its seed
+                        final long quizSeed = random.nextLong();
+                        final List<Question> questions = subjects.sample(subject, difficulty, quizSeed);
+                        final int[] answers = answer(questions, accuracy, random);
+                        client.quiz(operations, subject, difficulty, quizSeed, answers);
+                    }
+                } catch (final Exception ex) {
+                    // The student can't continue, move onto the next
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        final long duration = System.nanoTime() - start;
+        driver.close();
+
+        // Report the results
+        final StringJoiner results = new StringJoiner(",", "{", "}");
+        int total = 0;
+        synchronized (operations) {
+            for (final Map.Entry<String, Latencies> entry : operations.entrySet()) {
+                results.add("\"" + entry.getKey() + "\":" + entry.getValue().toJson(duration));
+                total += entry.getValue().getCount();
+            }
+        }
+        final String json = String.format(Locale.ROOT,
+                "{\"target\":\"%s\",\"students\":%d,\"concurrency\":%d,\"quizzes\":%d,\"thinkTimeMs\":%d,"
+                        + "\"accuracy\":%s,\"subject\":\"%s\",\"difficulty\":\"%s\",\"seed\":%d,"
+                        + "\"durationMs\":%.1f,\"throughput\":%.2f,\"operations\":%s}",
+                target, students, concurrency, quizzes, thinkTime, accuracy, subjectId, difficulty.getId(), seed,
+                duration / 1e6, total / (duration / 1e9), results);
+
+        if (args.hasFlag("o")) {
+            Files.write(Paths.get(args.getFlag("o")), (json + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+        }
+        else {
+            System.out.println(json);
+        }
+    }
+
+    private static String name(final int id) {
+        final int base = NAME_CHARACTERS.length();
+        return "" + NAME_CHARACTERS.charAt(id / (base * base))
+                + NAME_CHARACTERS.charAt(id / base % base)
+                + NAME_CHARACTERS.charAt(id % base)
+                + " Loadtest";
+    }
+
+    private static int[] answer(final List<Question> questions, final double accuracy, final Random random) {
+        final int[] answers = new int[questions.size()];
+        for (int i = 0; i < answers.length; i++) {
+            final Question question = questions.get(i);
+            if (random.nextDouble() < accuracy || question.getAnswers().size() < 2) {
+                answers[i] = question.getCorrectAnswer();
+            }
+            else {
+                // Any of the other answers
+                final int wrong = random.nextInt(question.getAnswers().size() - 1);
+                answers[i] = wrong >= question.getCorrectAnswer() ? wrong + 1 : wrong;
+            }
+        }
+        return answers;
+    }
+
+    private static void time(final Map<String, Latencies> operations, final String operation,
+                             final Operation body) throws Exception {
+        final Latencies latencies = operations.computeIfAbsent(operation, key -> new Latencies());
+        final long start = System.nanoTime();
+        try {
+            body.run();
+        } catch (final Exception ex) {
+            latencies.error();
+            throw ex;
+        }
+        latencies.record(System.nanoTime() - start);
+    }
+
+    private static void think(final long thinkTime) throws InterruptedException {
+        if (thinkTime > 0) Thread.sleep(thinkTime);
+    }
+
+    private static void synthesiseSubject(final String subjectId) throws IOException {
+        final Random random = new Random(0);
+        final List<List<Question>> difficulties = new ArrayList<>();
+        for (final Difficulty difficulty : Difficulty.values()) {
+            final List<Question> questions = new ArrayList<>();
+            for (int i = 0; i < SYNTHETIC_QUESTIONS; i++) {
+                final List<String> answers = new ArrayList<>();
+                for (int j = 0; j < difficulty.getAvailableAnswers(); j++) {
+                    answers.add("Answer " + j);
+                }
+                questions.add(new Question("Question " + i, random.nextInt(answers.size()), answers));
+            }
+            difficulties.add(questions);
+        }
+
+        final Path definitionFile = Paths.get(subjectId + ".xml");
+        try (final OutputStream os = Files.newOutputStream(definitionFile)) {
+            QuestionDefinitions.serialise(new QuestionDefinitions(difficulties.get(0), difficulties.get(1),
+                    difficulties.get(2)), os);
+        }
+
+        final List<Subject> subjects = Files.exists(FergusMain.SUBJECTS_XML) ?
+                new ArrayList<>(SubjectRegistry.load(FergusMain.SUBJECTS_XML).values()) : new ArrayList<>();
+        subjects.add(new Subject(subjectId, subjectId, definitionFile.toString()));
+        try (final OutputStream os = Files.newOutputStream(FergusMain.SUBJECTS_XML)) {
+            Subject.serialise(subjects, os);
+        }
+    }
+
+    /**
+     * An operation of a simulated student.
+     */
+    @FunctionalInterface
+    private interface Operation {
+
+        void run() throws Exception;
+
+    }
+
+    /**
+     * The means by which load is driven.
+     */
+    private interface Driver {
+
+        /**
+         * Creates a client for the given student.
+         *
+         * @param fullname  The student's full name
+         * @param age       The student's age
+         * @param yearGroup The student's year group
+         * @return The client
+         */
+        Client connect(final String fullname, final int age, final String yearGroup);
+
+        /**
+         * Closes the driver, once all of the load has been driven.
+         */
+        void close();
+
+    }
+
+    /**
+     * A simulated student's client.
+     */
+    private interface Client {
+
+        void signup() throws Exception;
+
+        void login() throws Exception;
+
+        void quiz(final Map<String, Latencies> operations, final Subject subject, final Difficulty difficulty,
+                  final long seed, final int[] answers) throws Exception;
+
+    }
+
+    /**
+     * Drives load through the command layer, in process.
+     */
+    private static final class CommandDriver implements Driver {
+
+        private final StudentRepository students;
+        private final SubjectRegistry subjects;
+        private final MailboxExecutor<Object> commandExecutor;
+        private final SessionTokens tokens = new SessionTokens(FergusMain.TOKEN_CAPACITY, FergusMain.TOKEN_TTL);
+
+        CommandDriver(final StudentRepository students, final SubjectRegistry subjects,
+                      final MailboxExecutor<Object> commandExecutor) {
+            this.students = students;
+            this.subjects = subjects;
+            this.commandExecutor = commandExecutor;
+        }
+
+        @Override
+        public Client connect(final String fullname, final int age, final String yearGroup) {
+            final String username = fullname.substring(0, 3) + age;
+            return new Client() {
+                private AnswerInput input;
+                private Session session;
+
+                @Override
+                public void signup() {
+                    final Session session = new Session(
+                            new AnswerInput(String.join("\n", fullname, Integer.toString(age), yearGroup, PASSWORD)),
+                            DISCARD, students, subjects, commandExecutor, tokens);
+                    session.getCurrentPhase().execute(session, "signup");
+                    if (!students.contains(username)) throw new IllegalStateException("Failed to sign up " + username);
+                }
+
+                @Override
+                public void login() {
+                    // The answers to the quizzes are given to the session as
+                    // they are answered
+                    this.input = new AnswerInput("");
+                    this.session = new Session(this.input, DISCARD, students, subjects, commandExecutor, tokens);
+                    this.session.getCurrentPhase().execute(this.session, "login " + username + " " + PASSWORD);
+                    if (this.session.getCurrentPhase() == FergusMain.LOGIN_PHASE) {
+                        throw new IllegalStateException("Failed to login " + username);
+                    }
+                }
+
+                @Override
+                public void quiz(final Map<String, Latencies> operations, final Subject subject,
+                                 final Difficulty difficulty, final long seed, final int[] answers) throws Exception {
+                    this.input.give(answers);
+                    time(operations, "quiz", () ->
+                            this.session.getCurrentPhase().execute(this.session, "quiz " + subject.getId() + " " +
+                                    difficulty.getId() + " -r " + QuestionSampler.toString(seed)));
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            this.commandExecutor.shutdown();
+            this.students.close();
+        }
+
+    }
+
+    /**
+     * Drives load through the HTTP API of a running server.
+     */
+    private static final class HttpDriver implements Driver {
+
+        private static final Pattern TOKEN = Pattern.compile("\"token\":\"([^\"]+)\"");
+
+        private final String url;
+
+        HttpDriver(final String url) {
+            this.url = url;
+        }
+
+        @Override
+        public Client connect(final String fullname, final int age, final String yearGroup) {
+            final String username = fullname.substring(0, 3) + age;
+            final String credentials = "Basic " + Base64.getEncoder().encodeToString(
+                    (username + ":" + PASSWORD).getBytes(StandardCharsets.UTF_8));
+            return new Client() {
+                // The session token, once logged in
+                private String authorization;
+
+                @Override
+                public void signup() throws IOException {
+                    request("POST", "/signup", form("fullname", fullname, "age", Integer.toString(age),
+                            "yearGroup", yearGroup, "password", PASSWORD), null);
+                }
+
+                @Override
+                public void login() throws IOException {
+                    // Present the session token from then on, as a real
+                    // client would, rather than the password
+                    final Matcher token = TOKEN.matcher(request("GET", "/login", null, credentials));
+                    if (!token.find()) throw new IOException("No session token was issued to " + username);
+                    this.authorization = "Bearer " + token.group(1);
+                }
+
+                @Override
+                public void quiz(final Map<String, Latencies> operations, final Subject subject,
+                                 final Difficulty difficulty, final long seed, final int[] answers) throws Exception {
+                    final String quiz = form("subject", subject.getId(), "difficulty", difficulty.getId(),
+                            "seed", QuestionSampler.toString(seed));
+                    time(operations, "quiz.fetch", () -> request("GET", "/quiz?" + quiz, null, this.authorization));
+                    time(operations, "quiz.answer", () -> request("POST", "/quiz", quiz + "&" + form("answers",
+                            Arrays.stream(answers).mapToObj(Integer::toString).collect(Collectors.joining(","))),
+                            this.authorization));
+                }
+            };
+        }
+
+        private String request(final String method, final String path, final String body, final String authorization)
+                throws IOException {
+            final HttpURLConnection connection = (HttpURLConnection) new URL(this.url + path).openConnection();
+            connection.setRequestMethod(method);
+            if (authorization != null) connection.setRequestProperty("Authorization", authorization);
+            if (body != null) {
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+                try (final OutputStream os = connection.getOutputStream()) {
+                    os.write(body.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+
+            // Read the whole of the response, so the connection can be
+            // kept alive
+            final int status = connection.getResponseCode();
+            final ByteArrayOutputStream response = new ByteArrayOutputStream();
+            try (final InputStream is = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                if (is != null) {
+                    final byte[] buffer = new byte[1024];
+                    int read;
+                    while ((read = is.read(buffer)) != -1) {
+                        response.write(buffer, 0, read);
+                    }
+                }
+            }
+            if (status >= 400) throw new IOException(method + " " + path + " responded " + status);
+            return new String(response.toByteArray(), StandardCharsets.UTF_8);
+        }
+
+        private static String form(final String... pairs) throws IOException {
+            final StringJoiner form = new StringJoiner("&");
+            for (int i = 0; i < pairs.length; i += 2) {
+                form.add(URLEncoder.encode(pairs[i], "UTF-8") + "=" + URLEncoder.encode(pairs[i + 1], "UTF-8"));
+            }
+            return form.toString();
+        }
+
+        @Override
+        public void close() {
+        }
+
+    }
+
+    /**
+     * The input of a simulated student's session, given the answers to
+     * each quiz before it is taken.
+     */
+    private static final class AnswerInput extends InputStream {
+
+        private byte[] input;
+        private int position = 0;
+
+        AnswerInput(final String input) {
+            this.input = (input + "\n").getBytes(StandardCharsets.UTF_8);
+        }
+
+        void give(final int[] answers) {
+            this.input = (Arrays.stream(answers).mapToObj(Integer::toString).collect(Collectors.joining("\n")) + "\n")
+                    .getBytes(StandardCharsets.UTF_8);
+            this.position = 0;
+        }
+
+        @Override
+        public int read() {
+            // Never end the input, as the session's scanner would then
+            // consider it closed
+            return this.position < this.input.length ? this.input[this.position++] & 0xFF : '\n';
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            if (len == 0) return 0;
+            final int read = Math.min(len, this.input.length - this.position);
+            if (read <= 0) {
+                b[off] = '\n';
+                return 1;
+            }
+            System.arraycopy(this.input, this.position, b, off, read);
+            this.position += read;
+            return read;
+        }
+
+    }
+
+    private LoadGenerator() {
+    }
+
+}
@@ -0,0 +1,183 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.model;
+
+import me.jamiemansfield.csnea.Difficulty;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A stress test of a student's attempts - many threads making attempts,
+ * while many others read them - checking that no attempt is lost, and
+ * that every read is consistent.
+ *
+ * <p>The writers each make their attempts in order, numbered by their
+ * percentage, so readers can check every snapshot holds each writer's
+ * attempts in the order they were made, with none missing.</p>
+ *
+ * <p>The previous storage, a list wrapped to be unmodifiable, is
+ * stressed alongside for comparison.</p>
+ *
+ * <p>Exits with a non-zero status, should any check fail.</p>
+ */
+public final class AttemptLogStress {
+
+    private static final int WRITERS = 8;
+    private static final int READERS = 4;
+    private static final int ATTEMPTS_PER_WRITER = 250_000;
+    private static final int ROUNDS = 5;
+
+    public static void main(final String[] args) throws InterruptedException {
+        boolean passed = true;
+        for (int round = 0; round < ROUNDS; round++) {
+            final Student student = new Student("stress", "Stress", 12, "7", "", "", false);
+            final Result result = stress(student::addAttempt, student::getAttempts);
+            System.out.println(String.format("AttemptLog round %d: %s", round, result));
+            passed &= result.failures == 0 && result.attempts == WRITERS * ATTEMPTS_PER_WRITER;
+        }
+
+        // The previous storage is expected to fail
+        final List<Attempt> previous = new ArrayList<>();
+        final Result result = stress(attempt -> {
+            synchronized (previous) {
+                previous.add(attempt);
+            }
+        }, () -> Collections.unmodifiableList(previous));
+        System.out.println("Previous (unmodifiable ArrayList): " + result);
+
+        if (!passed) {
+            System.out.println("FAILED");
+            System.exit(1);
+        }
+        System.out.println("PASSED");
+    }
+
+    private static Result stress(final Writer writer, final Reader reader) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        final AtomicLong scans = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        final List<Thread> threads = new ArrayList<>();
+
+        final List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            final String subject = "writer" + w;
+            final Thread thread = new Thread(() -> {
+                await(start);
+                for (int i = 0; i < ATTEMPTS_PER_WRITER; i++) {
+                    writer.write(new Attempt(subject, Difficulty.EASY, i));
+                }
+            });
+            writers.add(thread);
+        }
+        threads.addAll(writers);
+
+        for (int r = 0; r < READERS; r++) {
+            threads.add(new Thread(() -> {
+                await(start);
+                while (writing.get()) {
+                    try {
+                        if (!consistent(reader.read())) failures.incrementAndGet();
+                    } catch (final ConcurrentModificationException | IndexOutOfBoundsException
+                            | NullPointerException ex) {
+                        failures.incrementAndGet();
+                    }
+                    scans.incrementAndGet();
+                }
+            }));
+        }
+
+        final long started = System.nanoTime();
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (final Thread thread : writers) {
+            thread.join();
+        }
+        final long duration = System.nanoTime() - started;
+        writing.set(false);
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        // Check the final state
+        final List<Attempt> attempts = reader.read();
+        if (!consistent(attempts)) failures.incrementAndGet();
+        return new Result(attempts.size(), scans.get(), failures.get(), duration);
+    }
+
+    /**
+     * Checks the attempts of each writer are in order, with none missing.
+     *
+     * @param attempts The attempts
+     * @return {@code true} if the attempts are consistent;
+     *         {@code false} otherwise
+     */
+    private static boolean consistent(final List<Attempt> attempts) {
+        final int[] next = new int[WRITERS];
+        for (final Attempt attempt : attempts) {
+            final int writer = Integer.parseInt(attempt.getSubject().substring("writer".length()));
+            if (attempt.getPercentage() != next[writer]++) return false;
+        }
+        return true;
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Writer {
+
+        void write(final Attempt attempt);
+
+    }
+
+    @FunctionalInterface
+    private interface Reader {
+
+        List<Attempt> read();
+
+    }
+
+    private static final class Result {
+
+        private final int attempts;
+        private final long scans;
+        private final long failures;
+        private final long duration;
+
+        Result(final int attempts, final long scans, final long failures, final long duration) {
+            this.attempts = attempts;
+            this.scans = scans;
+            this.failures = failures;
+            this.duration = duration;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d/%d attempts, %d scans, %d failed scans, %.1f ns/attempt",
+                    this.attempts, WRITERS * ATTEMPTS_PER_WRITER, this.scans, this.failures,
+                    (double) this.duration / (WRITERS * ATTEMPTS_PER_WRITER));
+        }
+
+    }
+
+    private AttemptLogStress() {
+    }
+
+}
@@ -0,0 +1,119 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.model;
+
+import me.jamiemansfield.csnea.Difficulty;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * A benchmark of loading a large question bank - from its XML, and from
+ * its question pack - measuring the time to load it, the heap it holds,
+ * and the time to read every question.
+ *
+ * <p>The number of questions of each difficulty is given by the
+ * {@code fergus.bench.questions} system property (default: 100000).</p>
+ */
+public final class QuestionPackBenchmark {
+
+    private static final int QUESTIONS = Integer.getInteger("fergus.bench.questions", 100_000);
+    private static final int RUNS = 5;
+
+    // Holds the loaded definitions, so they can't be collected while
+    // being measured
+    private static volatile QuestionDefinitions sink;
+    private static volatile int answers;
+
+    public static void main(final String[] args) throws IOException {
+        final Path directory = Files.createTempDirectory("question-pack");
+        final Path xml = directory.resolve("questions.xml");
+        final Path pack = directory.resolve("questions.pack");
+
+        // Write the question bank, then compile it
+        final List<List<Question>> questions = new ArrayList<>();
+        for (final Difficulty difficulty : Difficulty.values()) {
+            final List<Question> difficultyQuestions = new ArrayList<>(QUESTIONS);
+            for (int i = 0; i < QUESTIONS; i++) {
+                final List<String> potentialAnswers = new ArrayList<>();
+                for (int answer = 0; answer < difficulty.getAvailableAnswers(); answer++) {
+                    potentialAnswers.add(Integer.toString(i + answer));
+                }
+                difficultyQuestions.add(new Question("What is " + i + " + " + difficulty.getId() + "?",
+                        i % potentialAnswers.size(), potentialAnswers));
+            }
+            questions.add(difficultyQuestions);
+        }
+        try (final OutputStream os = Files.newOutputStream(xml)) {
+            QuestionDefinitions.serialise(new QuestionDefinitions(questions.get(0), questions.get(1),
+                    questions.get(2)), os);
+        }
+        try (final InputStream is = Files.newInputStream(xml)) {
+            QuestionPack.write(QuestionDefinitions.deserialise(is), pack);
+        }
+        System.out.println(String.format("%d questions: %d bytes of XML, %d bytes of pack",
+                QUESTIONS * Difficulty.values().length, Files.size(xml), Files.size(pack)));
+
+        System.out.println(String.format("%-6s %12s %12s %14s", "format", "load (ms)", "heap (KiB)", "read all (ms)"));
+        for (int run = 0; run < RUNS; run++) {
+            print("xml", () -> {
+                try (final InputStream is = Files.newInputStream(xml)) {
+                    return QuestionDefinitions.deserialise(is);
+                } catch (final IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+            });
+            print("pack", () -> QuestionPack.read(pack));
+        }
+
+        Files.delete(xml);
+        Files.delete(pack);
+        Files.delete(directory);
+    }
+
+    private static void print(final String format, final Supplier<QuestionDefinitions> loader) {
+        sink = null;
+        final long heapBefore = usedHeap();
+
+        final long loadStart = System.nanoTime();
+        final QuestionDefinitions definitions = loader.get();
+        final long loadNanos = System.nanoTime() - loadStart;
+        sink = definitions;
+        final long heap = usedHeap() - heapBefore;
+
+        final long readStart = System.nanoTime();
+        for (final Difficulty difficulty : Difficulty.values()) {
+            for (final Question question : definitions.get(difficulty)) {
+                answers += question.getAnswers().size();
+            }
+        }
+        final long readNanos = System.nanoTime() - readStart;
+
+        System.out.println(String.format("%-6s %12.1f %12d %14.1f", format, loadNanos / 1e6, heap / 1024,
+                readNanos / 1e6));
+    }
+
+    private static long usedHeap() {
+        // Collect a few times, as one collection may not find everything
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        final Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private QuestionPackBenchmark() {
+    }
+
+}
@@ -0,0 +1,120 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.security;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Supplier;
+
+/**
+ * A benchmark of generating salts - by the {@link SaltProvider}, and by
+ * the previous approach, of asking a new {@link SecureRandom} for seed
+ * material - both from a single thread, and from many at once.
+ *
+ * <p>The latency of each salt is recorded, so the tail (where the
+ * previous approach waits upon the system for entropy) is visible, as
+ * well as the throughput.</p>
+ */
+public final class SaltBenchmark {
+
+    private static final int SALT_LENGTH = 20;
+    private static final int SALTS = 20_000;
+    private static final int[] THREADS = { 1, 8 };
+    private static final int BUFFER = Integer.getInteger("fergus.salt.buffer", 4096);
+
+    // Consumes the salts, so the work can't be optimised away
+    private static volatile int sink;
+
+    public static void main(final String[] args) throws InterruptedException {
+        final SaltProvider provider = new SaltProvider(BUFFER);
+
+        System.out.println(String.format("%-10s %8s %12s %10s %10s %10s %10s",
+                "approach", "threads", "salts/s", "p50 (ns)", "p99 (ns)", "p99.9 (ns)", "max (ns)"));
+        for (final int threads : THREADS) {
+            // Warm up, then measure
+            run(() -> new SecureRandom().generateSeed(SALT_LENGTH), threads);
+            print("previous", threads, run(() -> new SecureRandom().generateSeed(SALT_LENGTH), threads));
+
+            run(() -> provider.next(SALT_LENGTH), threads);
+            print("provider", threads, run(() -> provider.next(SALT_LENGTH), threads));
+        }
+
+        final SaltProvider.Stats stats = provider.getStats();
+        System.out.println(String.format("provider: %d salts, %d refills of %d bytes (mean %dns), %d stalls",
+                stats.getServed(), stats.getRefills(), stats.getBufferSize(), stats.getMeanRefillNanos(),
+                stats.getStalls()));
+    }
+
+    private static Result run(final Supplier<byte[]> generator, final int threads) throws InterruptedException {
+        final int perThread = SALTS / threads;
+        final long[][] latencies = new long[threads][perThread];
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> workers = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            final long[] times = latencies[t];
+            final Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    final long before = System.nanoTime();
+                    sink += generator.get()[0];
+                    times[i] = System.nanoTime() - before;
+                }
+            });
+            workers.add(thread);
+            thread.start();
+        }
+
+        final long started = System.nanoTime();
+        start.countDown();
+        for (final Thread thread : workers) {
+            thread.join();
+        }
+        final long duration = System.nanoTime() - started;
+
+        final long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        return new Result(all, duration);
+    }
+
+    private static void print(final String approach, final int threads, final Result result) {
+        System.out.println(String.format("%-10s %8d %12.0f %10d %10d %10d %10d",
+                approach, threads, result.latencies.length / (result.duration / 1e9),
+                result.percentile(50), result.percentile(99), result.percentile(99.9),
+                result.latencies[result.latencies.length - 1]));
+    }
+
+    private static final class Result {
+
+        private final long[] latencies;
+        private final long duration;
+
+        Result(final long[] latencies, final long duration) {
+            this.latencies = latencies;
+            this.duration = duration;
+        }
+
+        long percentile(final double percentile) {
+            // Nearest-rank
+            final int rank = (int) Math.ceil(percentile / 100 * this.latencies.length);
+            return this.latencies[Math.max(0, rank - 1)];
+        }
+
+    }
+
+    private SaltBenchmark() {
+    }
+
+}
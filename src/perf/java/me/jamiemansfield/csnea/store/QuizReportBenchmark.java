@@ -0,0 +1,139 @@
+//******************************************************************************
+// Copyright (c) Jamie Mansfield <https://jamiemansfield.me/>
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+//******************************************************************************
+
+package me.jamiemansfield.csnea.store;
+
+import me.jamiemansfield.csnea.Difficulty;
+import me.jamiemansfield.csnea.model.Attempt;
+import me.jamiemansfield.csnea.model.Student;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * A benchmark of the work behind the quiz report - finding the results
+ * of a quiz, and who achieved the max score - as the number of students
+ * grows.
+ *
+ * <p>Reports are served from the quiz's aggregate, though the postings
+ * of the index (read by {@code report -g quiz -a}) are measured too.</p>
+ *
+ * <p>The previous approach, which looked up the student of each max
+ * scoring attempt by searching every student's attempts, is measured
+ * alongside for comparison - up to the point it becomes impractical.</p>
+ */
+public final class QuizReportBenchmark {
+
+    private static final int[] STUDENTS = { 1_000, 10_000, 100_000 };
+    private static final int ATTEMPTS_PER_STUDENT = 10;
+    private static final int PREVIOUS_LIMIT = 10_000;
+    private static final int RUNS = 10;
+
+    // Consumes the results, so the work can't be optimised away
+    private static volatile int sink;
+
+    public static void main(final String[] args) {
+        System.out.println(String.format("%10s %10s %14s %14s %16s %14s",
+                "students", "results", "index (ms)", "ns/result", "aggregate (us)", "previous (ms)"));
+
+        for (final int students : STUDENTS) {
+            final Random random = new Random(students);
+            final List<Student> population = new ArrayList<>(students);
+            final StudentIndex index = new StudentIndex();
+            for (int i = 0; i < students; i++) {
+                final List<Attempt> attempts = new ArrayList<>(ATTEMPTS_PER_STUDENT);
+                for (int j = 0; j < ATTEMPTS_PER_STUDENT; j++) {
+                    attempts.add(new Attempt("maths", Difficulty.values()[random.nextInt(3)], random.nextInt(101)));
+                }
+                final Student student = new Student("student" + i, "Student " + i, 12, "7", "", "", false, attempts);
+                population.add(student);
+                index.add(student);
+                student.getAttempts().forEach(attempt -> index.addAttempt(student, attempt));
+            }
+
+            // Warm up, then take the best of a number of runs
+            long best = Long.MAX_VALUE;
+            long bestAggregate = Long.MAX_VALUE;
+            for (int run = 0; run < RUNS * 2; run++) {
+                long start = System.nanoTime();
+                sink += indexed(index).size();
+                final long time = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                sink += index.getAggregate("maths", Difficulty.EASY).getMaxHolders().size();
+                final long aggregateTime = System.nanoTime() - start;
+
+                if (run >= RUNS) {
+                    best = Math.min(best, time);
+                    bestAggregate = Math.min(bestAggregate, aggregateTime);
+                }
+            }
+
+            String previous = "-";
+            if (students <= PREVIOUS_LIMIT) {
+                final long start = System.nanoTime();
+                sink += previous(population).size();
+                previous = String.format("%.2f", (System.nanoTime() - start) / 1e6);
+            }
+
+            final int count = index.getResults("maths", Difficulty.EASY).size();
+            System.out.println(String.format("%10d %10d %14.2f %14.1f %16.1f %14s",
+                    students, count, best / 1e6, (double) best / count, bestAggregate / 1e3, previous));
+        }
+    }
+
+    /**
+     * Finds who achieved the max score, from the index.
+     *
+     * @param index The index
+     * @return The students
+     */
+    private static List<Student> indexed(final StudentIndex index) {
+        final List<QuizResult> results = index.getResults("maths", Difficulty.EASY);
+        final int max = results.stream().mapToInt(QuizResult::getPercentage).max().orElse(-1);
+        return results.stream()
+                .filter(result -> max == result.getPercentage())
+                .map(QuizResult::getStudent)
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Finds who achieved the max score, as the quiz report previously
+     * did.
+     *
+     * @param students The students
+     * @return The students
+     */
+    private static Set<Student> previous(final List<Student> students) {
+        final List<Attempt> attempts = students.stream()
+                .map(Student::getAttempts)
+                .flatMap(List::stream)
+                .filter(attempt -> Objects.equals(attempt.getSubject(), "maths"))
+                .filter(attempt -> Objects.equals(attempt.getDifficulty(), Difficulty.EASY))
+                .collect(Collectors.toList());
+        final int max = attempts.stream().mapToInt(Attempt::getPercentage).max().orElse(-1);
+
+        final Set<Student> achievedBy = new HashSet<>();
+        attempts.stream()
+                .filter(attempt -> max == attempt.getPercentage())
+                .forEach(attempt -> students.stream()
+                        .filter(student -> student.getAttempts().contains(attempt))
+                        .findFirst()
+                        .ifPresent(achievedBy::add));
+        return achievedBy;
+    }
+
+    private QuizReportBenchmark() {
+    }
+
+}